@@ -0,0 +1,218 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.iconloader.util.SystemInfo;
+
+import javax.swing.*;
+import javax.swing.plaf.basic.BasicLookAndFeel;
+import javax.swing.plaf.metal.MetalLookAndFeel;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+
+/**
+ * Delegates the protected <code>BasicLookAndFeel</code> initialization methods to the
+ * base look and feel Darcula is built on.
+ * <p>
+ * On Windows and Linux the base is Metal, and the calls go through a Metal subclass
+ * without any reflection. On Mac the base is the system look and feel, which can't be
+ * subclassed; its methods are resolved once per JVM into cached method handles.
+ *
+ * @author Konstantin Bulenkov
+ */
+abstract class BaseLafBridge {
+  private static volatile Object[] ourMetalComboBoxDefaults;
+
+  abstract BasicLookAndFeel getLookAndFeel();
+
+  abstract void initComponentDefaults(UIDefaults defaults);
+
+  abstract void initSystemColorDefaults(UIDefaults defaults);
+
+  abstract void initClassDefaults(UIDefaults defaults);
+
+  abstract void loadSystemColors(UIDefaults defaults, String[] systemColors, boolean useNative);
+
+  UIDefaults getDefaults() {
+    return getLookAndFeel().getDefaults();
+  }
+
+  void initialize() {
+    getLookAndFeel().initialize();
+  }
+
+  void uninitialize() {
+    getLookAndFeel().uninitialize();
+  }
+
+  static BaseLafBridge create() {
+    if (SystemInfo.isWindows || SystemInfo.isLinux) {
+      MetalLookAndFeel.setCurrentTheme(new DarculaMetalTheme());
+      return new MetalBridge();
+    }
+    try {
+      final String name = UIManager.getSystemLookAndFeelClassName();
+      return new ReflectiveBridge((BasicLookAndFeel)Class.forName(name).newInstance());
+    }
+    catch (Exception e) {
+      DarculaLaf.log(e);
+      return new MetalBridge();
+    }
+  }
+
+  /**
+   * Combo boxes use Metal key bindings whatever the base is. The Metal defaults table is
+   * built only once per JVM to get them.
+   */
+  void patchComboBox(UIDefaults defaults) {
+    Object[] metalDefaults = ourMetalComboBoxDefaults;
+    if (metalDefaults == null) {
+      final UIDefaults table = new MetalLookAndFeel().getDefaults();
+      metalDefaults = new Object[]{table.get("ComboBox.ancestorInputMap"), table.get("ComboBox.actionMap")};
+      ourMetalComboBoxDefaults = metalDefaults;
+    }
+    defaults.remove("ComboBox.ancestorInputMap");
+    defaults.remove("ComboBox.actionMap");
+    defaults.put("ComboBox.ancestorInputMap", metalDefaults[0]);
+    defaults.put("ComboBox.actionMap", metalDefaults[1]);
+  }
+
+  private static final class MetalBridge extends BaseLafBridge {
+    private final DarculaMetalLookAndFeel myLaf = new DarculaMetalLookAndFeel();
+
+    @Override
+    BasicLookAndFeel getLookAndFeel() {
+      return myLaf;
+    }
+
+    @Override
+    void initComponentDefaults(UIDefaults defaults) {
+      myLaf.initComponentDefaults(defaults);
+    }
+
+    @Override
+    void initSystemColorDefaults(UIDefaults defaults) {
+      myLaf.initSystemColorDefaults(defaults);
+    }
+
+    @Override
+    void initClassDefaults(UIDefaults defaults) {
+      myLaf.initClassDefaults(defaults);
+    }
+
+    @Override
+    void loadSystemColors(UIDefaults defaults, String[] systemColors, boolean useNative) {
+      myLaf.loadSystemColors(defaults, systemColors, useNative);
+    }
+
+    @Override
+    void patchComboBox(UIDefaults defaults) {
+      // the base already is Metal, its own bindings are the ones to keep
+    }
+  }
+
+  /**
+   * Widens the protected initialization methods, so they can be called by the bridge.
+   */
+  private static final class DarculaMetalLookAndFeel extends MetalLookAndFeel {
+    @Override
+    protected void initComponentDefaults(UIDefaults table) {
+      super.initComponentDefaults(table);
+    }
+
+    @Override
+    protected void initSystemColorDefaults(UIDefaults table) {
+      super.initSystemColorDefaults(table);
+    }
+
+    @Override
+    protected void initClassDefaults(UIDefaults table) {
+      super.initClassDefaults(table);
+    }
+
+    @Override
+    protected void loadSystemColors(UIDefaults defaults, String[] systemColors, boolean useNative) {
+      super.loadSystemColors(defaults, systemColors, useNative);
+    }
+  }
+
+  private static final class ReflectiveBridge extends BaseLafBridge {
+    private static final MethodHandle INIT_COMPONENT_DEFAULTS = findMethod("initComponentDefaults", UIDefaults.class);
+    private static final MethodHandle INIT_SYSTEM_COLOR_DEFAULTS = findMethod("initSystemColorDefaults", UIDefaults.class);
+    private static final MethodHandle INIT_CLASS_DEFAULTS = findMethod("initClassDefaults", UIDefaults.class);
+    private static final MethodHandle LOAD_SYSTEM_COLORS = findMethod("loadSystemColors", UIDefaults.class, String[].class, boolean.class);
+
+    private final BasicLookAndFeel myLaf;
+
+    private ReflectiveBridge(BasicLookAndFeel laf) {
+      myLaf = laf;
+    }
+
+    private static MethodHandle findMethod(String name, Class<?>... parameterTypes) {
+      try {
+        final Method method = BasicLookAndFeel.class.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method);
+      }
+      catch (Exception e) {
+        DarculaLaf.log(e);
+        return null;
+      }
+    }
+
+    private void invoke(MethodHandle handle, UIDefaults defaults) {
+      if (handle == null) return;
+      try {
+        handle.invoke(myLaf, defaults);
+      }
+      catch (Throwable e) {
+        DarculaLaf.log(e);
+      }
+    }
+
+    @Override
+    BasicLookAndFeel getLookAndFeel() {
+      return myLaf;
+    }
+
+    @Override
+    void initComponentDefaults(UIDefaults defaults) {
+      invoke(INIT_COMPONENT_DEFAULTS, defaults);
+    }
+
+    @Override
+    void initSystemColorDefaults(UIDefaults defaults) {
+      invoke(INIT_SYSTEM_COLOR_DEFAULTS, defaults);
+    }
+
+    @Override
+    void initClassDefaults(UIDefaults defaults) {
+      invoke(INIT_CLASS_DEFAULTS, defaults);
+    }
+
+    @Override
+    void loadSystemColors(UIDefaults defaults, String[] systemColors, boolean useNative) {
+      if (LOAD_SYSTEM_COLORS == null) return;
+      try {
+        LOAD_SYSTEM_COLORS.invoke(myLaf, defaults, systemColors, useNative);
+      }
+      catch (Throwable e) {
+        DarculaLaf.log(e);
+      }
+    }
+  }
+}
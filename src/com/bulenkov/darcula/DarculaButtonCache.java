@@ -0,0 +1,199 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.iconloader.util.GraphicsUtil;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pre-rendered button backgrounds and borders.
+ * <p>
+ * A button background is a round rect with a vertical gradient, so every column between the two
+ * rounded ends looks the same. It is rendered once per colors, height, arc and device scale into
+ * a narrow image. On paint, the two ends are blitted and the middle column is stretched to the
+ * button width. Borders are cached the same way. Identical buttons in toolbars and dialogs share
+ * one image.
+ * <p>
+ * Like {@link DarculaFocusRing}, the cache is used only for integer device scales and the default
+ * composite. Otherwise the <code>paint*</code> methods return <code>false</code> and the caller
+ * paints directly.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaButtonCache {
+  private static final int BACKGROUND = 1;
+  private static final int BORDER = 2;
+  private static final int SIZE = 64;
+  private static final int MAX_HEIGHT = 256;
+
+  private static final AtomicLong ourHits = new AtomicLong();
+  private static final AtomicLong ourMisses = new AtomicLong();
+
+  private static volatile Entry[] ourEntries = new Entry[SIZE];
+
+  private DarculaButtonCache() {
+  }
+
+  /**
+   * Same as filling <code>(x, y, width, height)</code> with rounded corners and a vertical
+   * gradient from <code>color1</code> at 0 to <code>color2</code> at <code>gradientHeight</code>.
+   */
+  public static boolean paintBackground(Graphics2D g, Color color1, Color color2,
+                                        int x, int y, int width, int height, int arc, int gradientHeight) {
+    return paint(g, BACKGROUND, color1, color2, x, y, width, height, arc, gradientHeight);
+  }
+
+  /**
+   * Same as antialiased <code>drawRoundRect(x, y, width, height, arc, arc)</code> with the default
+   * stroke control.
+   */
+  public static boolean paintBorder(Graphics2D g, Color color, int x, int y, int width, int height, int arc) {
+    return paint(g, BORDER, color, color, x, y, width, height, arc, 0);
+  }
+
+  public static long getHits() {
+    return ourHits.get();
+  }
+
+  public static long getMisses() {
+    return ourMisses.get();
+  }
+
+  static void flush() {
+    ourEntries = new Entry[SIZE];
+  }
+
+  private static boolean paint(Graphics2D g, int kind, Color color1, Color color2,
+                               int x, int y, int width, int height, int arc, int gradientHeight) {
+    if (color1 == null || color2 == null || height <= 0 || height > MAX_HEIGHT) {
+      return false;
+    }
+    final int scale = DarculaFocusRing.getDeviceScale(g);
+    final int cap = getCap(arc);
+    if (scale == 0 || width < 2 * cap + 1 || !AlphaComposite.SrcOver.equals(g.getComposite())) {
+      return false;
+    }
+
+    final int rgb1 = color1.getRGB();
+    final int rgb2 = color2.getRGB();
+    final int index = index(kind, rgb1, rgb2, y, height, arc, gradientHeight, scale);
+    final Entry[] entries = ourEntries;
+    Entry entry = entries[index];
+    if (entry != null && entry.matches(kind, rgb1, rgb2, y, height, arc, gradientHeight, scale)) {
+      ourHits.incrementAndGet();
+    }
+    else {
+      ourMisses.incrementAndGet();
+      entry = new Entry(kind, rgb1, rgb2, y, height, arc, gradientHeight, scale,
+                        render(kind, color1, color2, y, height, arc, gradientHeight, scale));
+      entries[index] = entry;
+    }
+
+    // the image covers the shape plus one pixel of antialiasing on the left and two on the right
+    final BufferedImage image = entry.myImage;
+    final int top = y - 1;
+    final int bottom = top + image.getHeight() / scale;
+    final int sh = image.getHeight();
+    final int sw = image.getWidth();
+    final int left = x - 1;
+    final int right = x + width + 2;
+    final int leftEnd = x + cap;
+    final int rightStart = x + width - cap;
+    final int sLeftEnd = (1 + cap) * scale;
+    final int sRightStart = sw - (cap + 2) * scale;
+    g.drawImage(image, left, top, leftEnd, bottom, 0, 0, sLeftEnd, sh, null);
+    g.drawImage(image, leftEnd, top, rightStart, bottom, sLeftEnd, 0, sLeftEnd + scale, sh, null);
+    g.drawImage(image, rightStart, top, right, bottom, sRightStart, 0, sw, sh, null);
+    return true;
+  }
+
+  private static int getCap(int arc) {
+    return arc + 2;
+  }
+
+  private static BufferedImage render(int kind, Color color1, Color color2,
+                                      int y, int height, int arc, int gradientHeight, int scale) {
+    final int cap = getCap(arc);
+    final int shapeWidth = 2 * cap + 1;
+    final BufferedImage image = new BufferedImage((shapeWidth + 3) * scale, (height + 3) * scale,
+                                                  BufferedImage.TYPE_INT_ARGB_PRE);
+    final Graphics2D g = image.createGraphics();
+    try {
+      g.scale(scale, scale);
+      // keep the component coordinates, so that the gradient is positioned as on the button
+      g.translate(1, 1 - y);
+      if (kind == BACKGROUND) {
+        GraphicsUtil.setupAAPainting(g);
+        g.setPaint(new GradientPaint(0, 0, color1, 0, gradientHeight, color2));
+        g.fillRoundRect(0, y, shapeWidth, height, arc, arc);
+      }
+      else {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
+        g.setColor(color1);
+        g.drawRoundRect(0, y, shapeWidth, height, arc, arc);
+      }
+    }
+    finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  private static int index(int kind, int rgb1, int rgb2, int y, int height, int arc, int gradientHeight, int scale) {
+    int h = kind;
+    h = 31 * h + rgb1;
+    h = 31 * h + rgb2;
+    h = 31 * h + y;
+    h = 31 * h + height;
+    h = 31 * h + arc;
+    h = 31 * h + gradientHeight;
+    h = 31 * h + scale;
+    return h * 0x9E3779B9 >>> 26;
+  }
+
+  private static final class Entry {
+    private final int myKind;
+    private final int myRgb1;
+    private final int myRgb2;
+    private final int myY;
+    private final int myHeight;
+    private final int myArc;
+    private final int myGradientHeight;
+    private final int myScale;
+    private final BufferedImage myImage;
+
+    Entry(int kind, int rgb1, int rgb2, int y, int height, int arc, int gradientHeight, int scale, BufferedImage image) {
+      myKind = kind;
+      myRgb1 = rgb1;
+      myRgb2 = rgb2;
+      myY = y;
+      myHeight = height;
+      myArc = arc;
+      myGradientHeight = gradientHeight;
+      myScale = scale;
+      myImage = image;
+    }
+
+    boolean matches(int kind, int rgb1, int rgb2, int y, int height, int arc, int gradientHeight, int scale) {
+      return myKind == kind && myRgb1 == rgb1 && myRgb2 == rgb2 && myY == y && myHeight == height
+             && myArc == arc && myGradientHeight == gradientHeight && myScale == scale;
+    }
+  }
+}
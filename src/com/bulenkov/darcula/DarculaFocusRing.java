@@ -0,0 +1,163 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Raster cache for {@link DarculaUIUtil#paintFocusRing(Graphics2D, Color, Rectangle, boolean)}.
+ * <p>
+ * A rectangular ring is rendered once into a small nine-slice image: the corners are blitted
+ * and the one pixel wide middle row and column are stretched along the edges. Oval rings have no
+ * straight edges and are cached at their full size. Images are rendered at the device scale of
+ * the target graphics, so they are blitted 1:1 to device pixels.
+ * <p>
+ * The cache is used only for integer scales and translations and the default
+ * <code>SrcOver</code> composite; anything else is painted directly.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class DarculaFocusRing {
+  /** Covers the widest arc of the ring (9) plus antialiasing */
+  private static final int CORNER = 8;
+  private static final int MARGIN = 1;
+  private static final int MAX_OVAL_SIZE = 256;
+  private static final int MAX_SCALE = 8;
+  private static final int SIZE = 64;
+
+  private static volatile Entry[] ourEntries = new Entry[SIZE];
+
+  private DarculaFocusRing() {
+  }
+
+  /**
+   * @return <code>false</code> if the ring can't be painted from the cache
+   */
+  static boolean paint(Graphics2D g, Color ringColor, int correction, Rectangle bounds, boolean oval) {
+    final int scale = getDeviceScale(g);
+    if (scale == 0 || !AlphaComposite.SrcOver.equals(g.getComposite())) {
+      return false;
+    }
+
+    final int x = bounds.x - 3 - MARGIN;
+    final int y = bounds.y - 3 - MARGIN;
+    final int width = bounds.width + 6 + 2 * MARGIN;
+    final int height = bounds.height + 6 + 2 * MARGIN;
+    final int slice = 2 * (CORNER + MARGIN) + 1;
+    if (oval ? width > MAX_OVAL_SIZE || height > MAX_OVAL_SIZE || width <= 0 || height <= 0
+             : width < slice || height < slice) {
+      return false;
+    }
+
+    final int rgb = ringColor.getRGB();
+    final int imageWidth = oval ? width : slice;
+    final int imageHeight = oval ? height : slice;
+    final BufferedImage image = getImage(rgb, ringColor, correction, oval, imageWidth, imageHeight, scale);
+
+    if (oval) {
+      g.drawImage(image, x, y, width, height, null);
+      return true;
+    }
+
+    final int c = CORNER + MARGIN;
+    final int sc = c * scale;
+    final int sx2 = (c + 1) * scale;
+    final int sw = slice * scale;
+    final int x1 = x + c;
+    final int x2 = x + width - c;
+    final int y1 = y + c;
+    final int y2 = y + height - c;
+    final int xe = x + width;
+    final int ye = y + height;
+
+    // corners
+    g.drawImage(image, x, y, x1, y1, 0, 0, sc, sc, null);
+    g.drawImage(image, x2, y, xe, y1, sx2, 0, sw, sc, null);
+    g.drawImage(image, x, y2, x1, ye, 0, sx2, sc, sw, null);
+    g.drawImage(image, x2, y2, xe, ye, sx2, sx2, sw, sw, null);
+    // edges
+    g.drawImage(image, x1, y, x2, y1, sc, 0, sx2, sc, null);
+    g.drawImage(image, x1, y2, x2, ye, sc, sx2, sx2, sw, null);
+    g.drawImage(image, x, y1, x1, y2, 0, sc, sc, sx2, null);
+    g.drawImage(image, x2, y1, xe, y2, sx2, sc, sw, sx2, null);
+    return true;
+  }
+
+  static void flush() {
+    ourEntries = new Entry[SIZE];
+  }
+
+  private static BufferedImage getImage(int rgb, Color ringColor, int correction, boolean oval, int width, int height, int scale) {
+    final long key = ((long)rgb << 32)
+                     | (long)(correction & 0xFF) << 24
+                     | (oval ? 1L << 23 : 0)
+                     | (long)scale << 18
+                     | (long)width << 9
+                     | height;
+    final int index = (int)(key ^ key >>> 32) * 0x9E3779B9 >>> 26;
+    final Entry[] entries = ourEntries;
+    final Entry entry = entries[index];
+    if (entry != null && entry.myKey == key) {
+      return entry.myImage;
+    }
+    final BufferedImage image = render(ringColor, correction, oval, width, height, scale);
+    entries[index] = new Entry(key, image);
+    return image;
+  }
+
+  private static BufferedImage render(Color ringColor, int correction, boolean oval, int width, int height, int scale) {
+    final BufferedImage image = new BufferedImage(width * scale, height * scale, BufferedImage.TYPE_INT_ARGB_PRE);
+    final Graphics2D g = image.createGraphics();
+    try {
+      g.scale(scale, scale);
+      final Rectangle bounds = new Rectangle(MARGIN + 3, MARGIN + 3, width - 6 - 2 * MARGIN, height - 6 - 2 * MARGIN);
+      DarculaUIUtil.doPaintFocusRing(g, ringColor, correction, bounds, oval);
+    }
+    finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  /**
+   * @return integer device scale of <code>g</code>, or <code>0</code> if the transform isn't
+   * an integer scale plus an integer translation
+   */
+  static int getDeviceScale(Graphics2D g) {
+    final AffineTransform tx = g.getTransform();
+    if ((tx.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) != 0) {
+      return 0;
+    }
+    final double scale = tx.getScaleX();
+    if (scale != tx.getScaleY() || scale < 1 || scale > MAX_SCALE || scale != Math.rint(scale)
+        || tx.getTranslateX() != Math.rint(tx.getTranslateX()) || tx.getTranslateY() != Math.rint(tx.getTranslateY())) {
+      return 0;
+    }
+    return (int)scale;
+  }
+
+  private static final class Entry {
+    private final long myKey;
+    private final BufferedImage myImage;
+
+    Entry(long key, BufferedImage image) {
+      myKey = key;
+      myImage = image;
+    }
+  }
+}
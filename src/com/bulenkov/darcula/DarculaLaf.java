@@ -28,7 +28,6 @@ import javax.swing.plaf.ColorUIResource;
 import javax.swing.plaf.IconUIResource;
 import javax.swing.plaf.InsetsUIResource;
 import javax.swing.plaf.basic.BasicLookAndFeel;
-import javax.swing.plaf.metal.MetalLookAndFeel;
 import javax.swing.text.DefaultEditorKit;
 import javax.swing.text.html.HTMLEditorKit;
 import javax.swing.text.html.StyleSheet;
@@ -37,45 +36,27 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.*;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.*;
 import java.util.List;
-import java.util.Properties;
+import java.util.concurrent.Future;
 
 /**
  * @author Konstantin Bulenkov
  */
 public final class DarculaLaf extends BasicLookAndFeel {
   public static final String NAME = "Darcula";
-  BasicLookAndFeel base;
-  public DarculaLaf() {
-    try {
-      if (SystemInfo.isWindows || SystemInfo.isLinux) {
-        base = new MetalLookAndFeel();
-        MetalLookAndFeel.setCurrentTheme(new DarculaMetalTheme());
-      } else {
-        final String name = UIManager.getSystemLookAndFeelClassName();
-        base = (BasicLookAndFeel)Class.forName(name).newInstance();
-      }
-    }
-    catch (Exception ignore) {
-      log(ignore);
-    }
-  }
+  final BaseLafBridge base;
+  private final DarculaStartupProfile myProfile = DarculaStartupProfile.create();
+  private int myRewrittenDefaultsCount;
 
-  private void callInit(String method, UIDefaults defaults) {
-    try {
-      final Method superMethod = BasicLookAndFeel.class.getDeclaredMethod(method, UIDefaults.class);
-      superMethod.setAccessible(true);
-      superMethod.invoke(base, defaults);
-    }
-    catch (Exception ignore) {
-      log(ignore);
-    }
+  public DarculaLaf() {
+    myProfile.begin("base LAF construction");
+    base = BaseLafBridge.create();
+    myProfile.end();
   }
 
   @SuppressWarnings("UnusedParameters")
-  private static void log(Throwable e) {
+  static void log(Throwable e) {
     //everything is gonna be alright
     //e.printStackTrace();
   }
@@ -83,26 +64,34 @@ public final class DarculaLaf extends BasicLookAndFeel {
   @Override
   public UIDefaults getDefaults() {
     try {
-      final Method superMethod = BasicLookAndFeel.class.getDeclaredMethod("getDefaults");
-      superMethod.setAccessible(true);
-      final UIDefaults metalDefaults =
-          (UIDefaults)superMethod.invoke(new MetalLookAndFeel());
-      final UIDefaults defaults = (UIDefaults)superMethod.invoke(base);
+      myProfile.begin("base defaults");
+      final UIDefaults defaults = base.getDefaults();
+      myProfile.end();
+      myProfile.begin("initInputMapDefaults");
       initInputMapDefaults(defaults);
-      initIdeaDefaults(defaults);
+      myProfile.end();
+      myProfile.begin("loadDefaults");
+      myRewrittenDefaultsCount = initIdeaDefaults(defaults, base.getLookAndFeel().getClass());
+      myProfile.end();
+      myProfile.begin("patchStyledEditorKit");
       patchStyledEditorKit();
-      patchComboBox(metalDefaults, defaults);
+      myProfile.end();
+      myProfile.begin("patchComboBox");
+      base.patchComboBox(defaults);
+      myProfile.end();
+      myProfile.begin("icons");
       defaults.remove("Spinner.arrowButtonBorder");
       defaults.put("Spinner.arrowButtonSize", new Dimension(16, 5));
-      defaults.put("Tree.collapsedIcon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/treeNodeCollapsed.png")));
-      defaults.put("Tree.expandedIcon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/treeNodeExpanded.png")));
+      defaults.put("Tree.collapsedIcon", lazyIcon("treeNodeCollapsed.png"));
+      defaults.put("Tree.expandedIcon", lazyIcon("treeNodeExpanded.png"));
       defaults.put("CheckBoxMenuItem.checkIcon", EmptyIcon.create(16));
       defaults.put("RadioButtonMenuItem.checkIcon", EmptyIcon.create(16));
-      defaults.put("InternalFrame.icon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/internalFrame.png")));
-      defaults.put("OptionPane.informationIcon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/option_pane_info.png")));
-      defaults.put("OptionPane.questionIcon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/option_pane_question.png")));
-      defaults.put("OptionPane.warningIcon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/option_pane_warning.png")));
-      defaults.put("OptionPane.errorIcon", new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/option_pane_error.png")));
+      defaults.put("InternalFrame.icon", lazyIcon("internalFrame.png"));
+      defaults.put("OptionPane.informationIcon", lazyIcon("option_pane_info.png"));
+      defaults.put("OptionPane.questionIcon", lazyIcon("option_pane_question.png"));
+      defaults.put("OptionPane.warningIcon", lazyIcon("option_pane_warning.png"));
+      defaults.put("OptionPane.errorIcon", lazyIcon("option_pane_error.png"));
+      myProfile.end();
       return defaults;
     }
     catch (Exception ignore) {
@@ -111,21 +100,39 @@ public final class DarculaLaf extends BasicLookAndFeel {
     return super.getDefaults();
   }
 
-  private static void patchComboBox(UIDefaults metalDefaults, UIDefaults defaults) {
-    defaults.remove("ComboBox.ancestorInputMap");
-    defaults.remove("ComboBox.actionMap");
-    defaults.put("ComboBox.ancestorInputMap", metalDefaults.get("ComboBox.ancestorInputMap"));
-    defaults.put("ComboBox.actionMap", metalDefaults.get("ComboBox.actionMap"));
+  /**
+   * Icons are decoded only when a component asks for them.
+   */
+  private static UIDefaults.LazyValue lazyIcon(final String name) {
+    return new UIDefaults.LazyValue() {
+      @Override
+      public Object createValue(UIDefaults table) {
+        return new IconUIResource(IconLoader.getIcon("/com/bulenkov/darcula/icons/" + name));
+      }
+    };
+  }
+
+  /**
+   * Borders are instantiated only when a component asks for them. If the class can't be
+   * instantiated, the class name is left in the defaults as before.
+   */
+  static UIDefaults.LazyValue lazyInstance(final String className) {
+    return new UIDefaults.LazyValue() {
+      @Override
+      public Object createValue(UIDefaults table) {
+        try {
+          return Class.forName(className).newInstance();
+        } catch (Exception e) {
+          log(e);
+        }
+        return className;
+      }
+    };
   }
 
-  @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
   private static void patchStyledEditorKit() {
     try {
-      StyleSheet defaultStyles = new StyleSheet();
-      InputStream is = DarculaLaf.class.getResourceAsStream("darcula.css");
-      Reader r = new BufferedReader(new InputStreamReader(is, "UTF-8"));
-      defaultStyles.loadRules(r, null);
-      r.close();
+      StyleSheet defaultStyles = DarculaStyleSheet.createDefaultStyles();
       final Field keyField = HTMLEditorKit.class.getDeclaredField("DEFAULT_STYLES_KEY");
       keyField.setAccessible(true);
       final Object key = keyField.get(null);
@@ -135,24 +142,26 @@ public final class DarculaLaf extends BasicLookAndFeel {
     }
   }
 
-  private void call(String method) {
-    try {
-      final Method superMethod = BasicLookAndFeel.class.getDeclaredMethod(method);
-      superMethod.setAccessible(true);
-      superMethod.invoke(base);
-    }
-    catch (Exception ignore) {
-      log(ignore);
-    }
+  /**
+   * Starts decoding the bundled icons, parsing darcula.css and resolving the Darcula fonts
+   * on a low-priority daemon thread. Call it early, before building the first window, to
+   * overlap resource loading with UI construction. Subsequent calls return the same future.
+   * <p>
+   * Once Darcula is installed, the paint caches are also filled on the event dispatch thread
+   * for default-size buttons, check boxes, radio buttons, scroll bars and focus rings, unless
+   * another look and feel is installed first. The future doesn't wait for that step.
+   */
+  public static Future<?> prewarm() {
+    return DarculaPrewarmer.start();
   }
 
   public void initComponentDefaults(UIDefaults defaults) {
-    callInit("initComponentDefaults", defaults);
+    base.initComponentDefaults(defaults);
   }
 
   @SuppressWarnings({"HardCodedStringLiteral"})
-  static void initIdeaDefaults(UIDefaults defaults) {
-    loadDefaults(defaults);
+  static int initIdeaDefaults(UIDefaults defaults, Class<?> lafClass) {
+    final int rewritten = loadDefaults(defaults, lafClass);
     defaults.put("Table.ancestorInputMap", new UIDefaults.LazyInputMap(new Object[] {
         "ctrl C", "copy",
         "ctrl V", "paste",
@@ -204,12 +213,59 @@ public final class DarculaLaf extends BasicLookAndFeel {
         //"ESCAPE", "cancel",
         "F2", "startEditing"
     }));
+    return rewritten;
+  }
+
+  /**
+   * @return number of base defaults rewritten by global <code>darcula.*</code> settings
+   */
+  private static int loadDefaults(UIDefaults defaults, Class<?> lafClass) {
+    final String osSuffix = getOsSuffix();
+    Map<String, Object> values = DarculaThemeSnapshot.load(osSuffix);
+    if (values == null) {
+      values = parseProperties(osSuffix);
+      if (values == null) return 0;
+    }
+
+    int rewritten = 0;
+    final DefaultsSuffixIndex index = DefaultsSuffixIndex.get(lafClass, defaults);
+    final String prefix = "darcula.";
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      final String key = entry.getKey();
+      if (key.startsWith(prefix)) {
+        rewritten += index.apply(defaults, key.substring(prefix.length()), entry.getValue());
+      }
+    }
+
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      defaults.put(entry.getKey(), entry.getValue());
+    }
+    return rewritten;
+  }
+
+  static String getOsSuffix() {
+    return SystemInfo.isMac ? "mac" : SystemInfo.isWindows ? "windows" : "linux";
+  }
+
+  /**
+   * Reads <code>darcula.properties</code> with the given OS overlay and parses every value.
+   *
+   * @return parsed values or <code>null</code> if the properties can't be read
+   */
+  static Map<String, Object> parseProperties(String osSuffix) {
+    final Properties properties = loadProperties(osSuffix);
+    if (properties == null) return null;
+
+    final Map<String, Object> values = new LinkedHashMap<String, Object>();
+    for (String key : properties.stringPropertyNames()) {
+      values.put(key, parseValue(key, properties.getProperty(key)));
+    }
+    return values;
   }
 
   @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
-  private static void loadDefaults(UIDefaults defaults) {
+  static Properties loadProperties(String osSuffix) {
     final Properties properties = new Properties();
-    final String osSuffix = SystemInfo.isMac ? "mac" : SystemInfo.isWindows ? "windows" : "linux";
     try {
       InputStream stream = DarculaLaf.class.getResourceAsStream("darcula.properties");
       properties.load(stream);
@@ -218,34 +274,15 @@ public final class DarculaLaf extends BasicLookAndFeel {
       stream = DarculaLaf.class.getResourceAsStream("darcula_" + osSuffix + ".properties");
       properties.load(stream);
       stream.close();
-
-      HashMap<String, Object> darculaGlobalSettings = new HashMap<String, Object>();
-      final String prefix = "darcula.";
-      for (String key : properties.stringPropertyNames()) {
-        if (key.startsWith(prefix)) {
-          darculaGlobalSettings.put(key.substring(prefix.length()), parseValue(key, properties.getProperty(key)));
-        }
-      }
-
-      for (Object key : defaults.keySet()) {
-        if (key instanceof String && ((String)key).contains(".")) {
-          final String s = (String)key;
-          final String darculaKey = s.substring(s.lastIndexOf('.') + 1);
-          if (darculaGlobalSettings.containsKey(darculaKey)) {
-            defaults.put(key, darculaGlobalSettings.get(darculaKey));
-          }
-        }
-      }
-
-      for (String key : properties.stringPropertyNames()) {
-        final String value = properties.getProperty(key);
-        defaults.put(key, parseValue(key, value));
-      }
     }
-    catch (IOException e) {log(e);}
+    catch (IOException e) {
+      log(e);
+      return null;
+    }
+    return properties;
   }
 
-  private static Object parseValue(String key, String value) {
+  static Object parseValue(String key, String value) {
     if ("null".equals(value)) {
       return null;
     }
@@ -256,9 +293,7 @@ public final class DarculaLaf extends BasicLookAndFeel {
           Integer.parseInt(numbers.get(2)),
           Integer.parseInt(numbers.get(3)));
     } else if (key.endsWith(".border")) {
-      try {
-        return Class.forName(value).newInstance();
-      } catch (Exception e) {log(e);}
+      return lazyInstance(value);
     } else {
       final Color color = ColorUtil.fromHex(value, null);
       final Integer invVal = getInteger(value);
@@ -287,6 +322,22 @@ public final class DarculaLaf extends BasicLookAndFeel {
   }
 
 
+  /**
+   * Diagnostics: per-phase timings of this instance's installation. Empty unless the JVM
+   * was started with <code>-Ddarcula.startup.profile=true</code>.
+   */
+  public DarculaStartupProfile getStartupProfile() {
+    return myProfile;
+  }
+
+  /**
+   * Diagnostics: number of base look and feel defaults overwritten by global
+   * <code>darcula.*</code> settings during the last {@link #getDefaults()} call.
+   */
+  public int getRewrittenDefaultsCount() {
+    return myRewrittenDefaultsCount;
+  }
+
   @Override
   public String getName() {
     return NAME;
@@ -314,37 +365,29 @@ public final class DarculaLaf extends BasicLookAndFeel {
 
   @Override
   protected void initSystemColorDefaults(UIDefaults defaults) {
-    callInit("initSystemColorDefaults", defaults);
+    base.initSystemColorDefaults(defaults);
   }
 
   @Override
   protected void initClassDefaults(UIDefaults defaults) {
-    callInit("initClassDefaults", defaults);
+    base.initClassDefaults(defaults);
   }
 
   @Override
   public void initialize() {
-    call("initialize");
+    myProfile.begin("initialize");
+    base.initialize();
+    myProfile.end();
   }
 
   @Override
   public void uninitialize() {
-    call("uninitialize");
+    base.uninitialize();
   }
 
   @Override
   protected void loadSystemColors(UIDefaults defaults, String[] systemColors, boolean useNative) {
-    try {
-      final Method superMethod = BasicLookAndFeel.class.getDeclaredMethod("loadSystemColors",
-          UIDefaults.class,
-          String[].class,
-          boolean.class);
-      superMethod.setAccessible(true);
-      superMethod.invoke(base, defaults, systemColors, useNative);
-    }
-    catch (Exception ignore) {
-      log(ignore);
-    }
+    base.loadSystemColors(defaults, systemColors, useNative);
   }
 
 
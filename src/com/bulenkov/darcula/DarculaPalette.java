@@ -0,0 +1,128 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.iconloader.util.ColorUtil;
+import com.bulenkov.iconloader.util.DoubleColor;
+
+import java.awt.*;
+
+/**
+ * Memoized colors derived at paint time, such as <code>ColorUtil.toAlpha(color, 120)</code>.
+ * <p>
+ * Results are keyed by the current RGB value of the base color, the operation and its parameter,
+ * so a <code>DoubleColor</code> base is looked up by the value it has right now. The cache is a
+ * fixed-size direct-mapped table of immutable entries: a hit does not allocate or lock, and a
+ * colliding entry is simply replaced. It is flushed together with {@link DarculaTheme}.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaPalette {
+  private static final int SIZE = 512;
+
+  private static final int TO_ALPHA = 1;
+  private static final int SHIFT = 2;
+  private static final int DOUBLE = 3;
+
+  private static volatile Entry[] ourEntries = new Entry[SIZE];
+
+  private DarculaPalette() {
+  }
+
+  /**
+   * Same as <code>ColorUtil.toAlpha(color, alpha)</code>.
+   */
+  public static Color toAlpha(Color color, int alpha) {
+    final Color base = color == null ? Color.black : color;
+    final int rgb = base.getRGB();
+    final Entry entry = find(TO_ALPHA, rgb, 0, alpha);
+    if (entry != null) {
+      return entry.myColor;
+    }
+    return store(TO_ALPHA, rgb, 0, alpha, ColorUtil.toAlpha(base, alpha));
+  }
+
+  /**
+   * Same as <code>ColorUtil.shift(color, factor)</code>.
+   */
+  public static Color shift(Color color, double factor) {
+    final int rgb = color.getRGB();
+    final Entry entry = find(SHIFT, rgb, 0, factor);
+    if (entry != null) {
+      return entry.myColor;
+    }
+    return store(SHIFT, rgb, 0, factor, ColorUtil.shift(color, factor));
+  }
+
+  /**
+   * Same as <code>new DoubleColor(regular, dark)</code>.
+   */
+  public static DoubleColor doubleColor(Color regular, Color dark) {
+    final int rgb = regular.getRGB();
+    final int darkRgb = dark.getRGB();
+    final Entry entry = find(DOUBLE, rgb, darkRgb, 0);
+    if (entry != null) {
+      return (DoubleColor)entry.myColor;
+    }
+    final DoubleColor color = new DoubleColor(regular, dark);
+    store(DOUBLE, rgb, darkRgb, 0, color);
+    return color;
+  }
+
+  public static void flush() {
+    ourEntries = new Entry[SIZE];
+  }
+
+  private static Entry find(int op, int rgb, int rgb2, double param) {
+    final Entry entry = ourEntries[index(op, rgb, rgb2, param)];
+    return entry != null && entry.matches(op, rgb, rgb2, param) ? entry : null;
+  }
+
+  private static Color store(int op, int rgb, int rgb2, double param, Color color) {
+    ourEntries[index(op, rgb, rgb2, param)] = new Entry(op, rgb, rgb2, param, color);
+    return color;
+  }
+
+  private static int index(int op, int rgb, int rgb2, double param) {
+    final long bits = Double.doubleToLongBits(param);
+    int h = rgb;
+    h = 31 * h + op;
+    h = 31 * h + rgb2;
+    h = 31 * h + (int)(bits ^ (bits >>> 32));
+    h ^= h >>> 16;
+    return h & (SIZE - 1);
+  }
+
+  private static final class Entry {
+    private final int myOp;
+    private final int myRgb;
+    private final int myRgb2;
+    private final double myParam;
+    private final Color myColor;
+
+    Entry(int op, int rgb, int rgb2, double param, Color color) {
+      myOp = op;
+      myRgb = rgb;
+      myRgb2 = rgb2;
+      myParam = param;
+      myColor = color;
+    }
+
+    boolean matches(int op, int rgb, int rgb2, double param) {
+      return myOp == op && myRgb == rgb && myRgb2 == rgb2 && myParam == param;
+    }
+  }
+}
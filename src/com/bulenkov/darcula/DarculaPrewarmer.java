@@ -0,0 +1,220 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.iconloader.IconLoader;
+
+import javax.swing.*;
+import javax.swing.plaf.metal.MetalTheme;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads Darcula resources on a low-priority daemon thread, so that the I/O overlaps with
+ * building the first window instead of being paid on the first paint.
+ * <p>
+ * The paint caches (button, check box and radio button glyphs, scroll bar thumbs, the focus
+ * ring) are keyed by theme colors, so they are filled later, on the event dispatch thread once
+ * Darcula is the installed look and feel, by painting default-size components offscreen at the
+ * scale of the default screen. If another look and feel is installed first, they are left
+ * alone. Other sizes and states are still rendered on first use.
+ *
+ * @see DarculaLaf#prewarm()
+ * @author Konstantin Bulenkov
+ */
+final class DarculaPrewarmer implements Runnable {
+  private static final String[] ICONS = {
+    "search.png", "searchWithHistory.png", "clear.png",
+    "treeNodeCollapsed.png", "treeNodeExpanded.png",
+    "internalFrame.png",
+    "option_pane_info.png", "option_pane_question.png", "option_pane_warning.png", "option_pane_error.png",
+    "splitGlueH.png", "splitGlueV.png"
+  };
+
+  private static Future<?> ourFuture;
+
+  private DarculaPrewarmer() {
+  }
+
+  static synchronized Future<?> start() {
+    if (ourFuture == null) {
+      final FutureTask<Void> task = new FutureTask<Void>(new DarculaPrewarmer(), null);
+      final Thread thread = new Thread(task, "Darcula Prewarm");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+      ourFuture = task;
+    }
+    return ourFuture;
+  }
+
+  @Override
+  public void run() {
+    prewarmStyleSheet();
+    prewarmIcons();
+    prewarmFonts();
+    prewarmPaintCaches();
+  }
+
+  private static void prewarmStyleSheet() {
+    try {
+      DarculaStyleSheet.getShared();
+    }
+    catch (Throwable e) {
+      DarculaLaf.log(e);
+    }
+  }
+
+  private static void prewarmIcons() {
+    final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = image.createGraphics();
+    try {
+      for (String name : ICONS) {
+        try {
+          final Icon icon = IconLoader.findIcon("/com/bulenkov/darcula/icons/" + name, DarculaPrewarmer.class, true);
+          if (icon != null) {
+            // decodes the image at the current scale, the icon itself is cached by IconLoader
+            icon.paintIcon(null, g, 0, 0);
+          }
+        }
+        catch (Throwable e) {
+          DarculaLaf.log(e);
+        }
+      }
+    }
+    finally {
+      g.dispose();
+    }
+  }
+
+  private static void prewarmFonts() {
+    final BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    final Graphics2D g = image.createGraphics();
+    try {
+      final MetalTheme theme = new DarculaMetalTheme();
+      final Font[] fonts = {
+        theme.getControlTextFont(), theme.getMenuTextFont(), theme.getUserTextFont(),
+        theme.getSystemTextFont(), theme.getSubTextFont(), theme.getWindowTitleFont()
+      };
+      for (Font font : fonts) {
+        if (font != null) {
+          g.setFont(font);
+          g.getFontMetrics().getStringBounds("Darcula", g);
+          g.drawString("Darcula", 0, 0);
+        }
+      }
+    }
+    catch (Throwable e) {
+      DarculaLaf.log(e);
+    }
+    finally {
+      g.dispose();
+    }
+  }
+
+  private static void prewarmPaintCaches() {
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (UIManager.getLookAndFeel() instanceof DarculaLaf) {
+          paintPrototypes();
+          return;
+        }
+        UIManager.addPropertyChangeListener(new PropertyChangeListener() {
+          @Override
+          public void propertyChange(PropertyChangeEvent evt) {
+            if (!"lookAndFeel".equals(evt.getPropertyName())) {
+              return;
+            }
+            // only the first look and feel installed after the prewarm is waited for
+            UIManager.removePropertyChangeListener(this);
+            if (evt.getNewValue() instanceof DarculaLaf) {
+              // let the look and feel finish installing first
+              SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                  if (UIManager.getLookAndFeel() instanceof DarculaLaf) {
+                    paintPrototypes();
+                  }
+                }
+              });
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private static void paintPrototypes() {
+    final int scale = getDefaultScreenScale();
+    if (scale == 0) {
+      // the caches are bypassed at fractional scales
+      return;
+    }
+    try {
+      final JComponent[] components = {
+        new JButton("Darcula"), new JCheckBox("Darcula"), new JRadioButton("Darcula"),
+        new JScrollBar(Adjustable.VERTICAL, 0, 10, 0, 100), new JScrollBar(Adjustable.HORIZONTAL, 0, 10, 0, 100)
+      };
+      final BufferedImage image = new BufferedImage(128 * scale, 128 * scale, BufferedImage.TYPE_INT_ARGB);
+      final Graphics2D g = image.createGraphics();
+      try {
+        g.scale(scale, scale);
+        for (JComponent component : components) {
+          final Dimension size = component.getPreferredSize();
+          if (component instanceof JScrollBar) {
+            // the thumb needs some length to be painted
+            if (((JScrollBar)component).getOrientation() == Adjustable.VERTICAL) {
+              size.height = 100;
+            }
+            else {
+              size.width = 100;
+            }
+          }
+          component.setSize(size);
+          component.doLayout();
+          component.paint(g);
+        }
+        // one nine-slice serves the rings of text fields, spinners, combo boxes and buttons
+        DarculaUIUtil.paintFocusRing(g, 4, 4, 64, 24);
+      }
+      finally {
+        g.dispose();
+      }
+    }
+    catch (Throwable e) {
+      DarculaLaf.log(e);
+    }
+  }
+
+  /**
+   * @return integer scale of the default screen, or <code>0</code> if it is fractional
+   */
+  private static int getDefaultScreenScale() {
+    if (GraphicsEnvironment.isHeadless()) {
+      return 1;
+    }
+    final AffineTransform tx = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+      .getDefaultConfiguration().getDefaultTransform();
+    final double scale = tx.getScaleX();
+    return scale >= 1 && scale == tx.getScaleY() && scale == Math.rint(scale) ? (int)scale : 0;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered glyphs for small controls such as check boxes and radio buttons.
+ * <p>
+ * Every visual state of a glyph is a cell of one sprite sheet image. All cells are rendered
+ * when the sheet is created, and painting a glyph is a single blit. Sheets are keyed by the
+ * painting class, the background color, the glyph size, a painter specific value, painter flags
+ * and the device scale, and are flushed together with {@link DarculaTheme}.
+ * <p>
+ * Like the other Darcula raster caches, sheets are used only for integer device scales and the
+ * default composite; otherwise {@link #paint} returns <code>false</code>.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaSpriteSheet {
+  /** Room for focus rings painted around the glyph */
+  private static final int MARGIN = 5;
+  private static final int MAX_SIZE = 128;
+  private static final int SIZE = 64;
+
+  private static volatile Entry[] ourEntries = new Entry[SIZE];
+
+  public interface CellPainter {
+    /**
+     * Paints glyph state <code>cell</code> with its origin at <code>(0, 0)</code>.
+     */
+    void paintCell(Graphics2D g, int cell, Color background, int width, int height, int extra);
+  }
+
+  private DarculaSpriteSheet() {
+  }
+
+  /**
+   * Blits state <code>cell</code> of the glyph to <code>(x, y)</code>.
+   *
+   * @param owner   class of the painter, usually the UI delegate class
+   * @param cells   number of states the painter knows
+   * @param extra   any other value the painter's output depends on
+   * @param flags   global settings the painter's output depends on
+   * @return <code>false</code> if the glyph has to be painted directly
+   */
+  public static boolean paint(Graphics2D g, Class<?> owner, CellPainter painter, int cells, int cell,
+                              Color background, int width, int height, int extra, int flags, int x, int y) {
+    if (width <= 0 || height <= 0 || width > MAX_SIZE || height > MAX_SIZE
+        || !AlphaComposite.SrcOver.equals(g.getComposite())) {
+      return false;
+    }
+    final int scale = DarculaFocusRing.getDeviceScale(g);
+    if (scale == 0) {
+      return false;
+    }
+
+    final int rgb = background == null ? 0 : background.getRGB();
+    int h = owner.hashCode();
+    h = 31 * h + rgb;
+    h = 31 * h + width;
+    h = 31 * h + height;
+    h = 31 * h + extra;
+    h = 31 * h + flags;
+    h = 31 * h + scale;
+    final int index = h * 0x9E3779B9 >>> 26;
+
+    final Entry[] entries = ourEntries;
+    Entry entry = entries[index];
+    if (entry == null || !entry.matches(owner, rgb, width, height, extra, flags, scale)) {
+      entry = new Entry(owner, rgb, width, height, extra, flags, scale,
+                        render(painter, cells, background, width, height, extra, scale));
+      entries[index] = entry;
+    }
+
+    final int cellWidth = width + 2 * MARGIN;
+    final int cellHeight = height + 2 * MARGIN;
+    final int sx = cell * cellWidth * scale;
+    g.drawImage(entry.myImage, x - MARGIN, y - MARGIN, x - MARGIN + cellWidth, y - MARGIN + cellHeight,
+                sx, 0, sx + cellWidth * scale, cellHeight * scale, null);
+    return true;
+  }
+
+  static void flush() {
+    ourEntries = new Entry[SIZE];
+  }
+
+  private static BufferedImage render(CellPainter painter, int cells, Color background,
+                                      int width, int height, int extra, int scale) {
+    final int cellWidth = width + 2 * MARGIN;
+    final int cellHeight = height + 2 * MARGIN;
+    final BufferedImage image = new BufferedImage(cells * cellWidth * scale, cellHeight * scale,
+                                                  BufferedImage.TYPE_INT_ARGB_PRE);
+    for (int cell = 0; cell < cells; cell++) {
+      final Graphics2D g = image.createGraphics();
+      try {
+        g.scale(scale, scale);
+        g.clipRect(cell * cellWidth, 0, cellWidth, cellHeight);
+        g.translate(cell * cellWidth + MARGIN, MARGIN);
+        painter.paintCell(g, cell, background, width, height, extra);
+      }
+      finally {
+        g.dispose();
+      }
+    }
+    return image;
+  }
+
+  private static final class Entry {
+    private final Class<?> myOwner;
+    private final int myRgb;
+    private final int myWidth;
+    private final int myHeight;
+    private final int myExtra;
+    private final int myFlags;
+    private final int myScale;
+    private final BufferedImage myImage;
+
+    Entry(Class<?> owner, int rgb, int width, int height, int extra, int flags, int scale, BufferedImage image) {
+      myOwner = owner;
+      myRgb = rgb;
+      myWidth = width;
+      myHeight = height;
+      myExtra = extra;
+      myFlags = flags;
+      myScale = scale;
+      myImage = image;
+    }
+
+    boolean matches(Class<?> owner, int rgb, int width, int height, int extra, int flags, int scale) {
+      return myOwner == owner && myRgb == rgb && myWidth == width && myHeight == height
+             && myExtra == extra && myFlags == flags && myScale == scale;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.darcula.util.Registry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wall time and allocated bytes of every phase of a {@link DarculaLaf} installation.
+ * <p>
+ * Profiling is off by default; start the JVM with <code>-Ddarcula.startup.profile=true</code>
+ * to enable it. The report is then available from {@link DarculaLaf#getStartupProfile()},
+ * and each phase is also emitted as a <code>com.bulenkov.darcula.StartupPhase</code> JFR event
+ * when the runtime supports Flight Recorder.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaStartupProfile {
+  public static final String ENABLED_PROPERTY = "darcula.startup.profile";
+
+  private static final boolean JFR_AVAILABLE = StartupPhaseEvent.isAvailable();
+
+  private final boolean myEnabled;
+  private final List<Phase> myPhases = new ArrayList<Phase>();
+
+  private String myPhaseName;
+  private long myPhaseStart;
+  private long myPhaseStartBytes;
+  private Object myEvent;
+
+  private DarculaStartupProfile(boolean enabled) {
+    myEnabled = enabled;
+  }
+
+  static DarculaStartupProfile create() {
+    return new DarculaStartupProfile(Registry.is(ENABLED_PROPERTY));
+  }
+
+  public boolean isEnabled() {
+    return myEnabled;
+  }
+
+  synchronized void begin(String phase) {
+    if (!myEnabled) return;
+    myPhaseName = phase;
+    myPhaseStartBytes = getAllocatedBytes();
+    if (JFR_AVAILABLE) {
+      myEvent = StartupPhaseEvent.start();
+    }
+    myPhaseStart = System.nanoTime();
+  }
+
+  synchronized void end() {
+    if (!myEnabled || myPhaseName == null) return;
+    final long duration = System.nanoTime() - myPhaseStart;
+    final long endBytes = getAllocatedBytes();
+    final long allocated = endBytes < 0 || myPhaseStartBytes < 0 ? -1 : endBytes - myPhaseStartBytes;
+    myPhases.add(new Phase(myPhaseName, duration, allocated));
+    if (myEvent != null) {
+      StartupPhaseEvent.commit(myEvent, myPhaseName, allocated);
+      myEvent = null;
+    }
+    myPhaseName = null;
+  }
+
+  public synchronized List<Phase> getPhases() {
+    return Collections.unmodifiableList(new ArrayList<Phase>(myPhases));
+  }
+
+  public synchronized long getTotalNanos() {
+    long total = 0;
+    for (Phase phase : myPhases) {
+      total += phase.getDurationNanos();
+    }
+    return total;
+  }
+
+  @Override
+  public synchronized String toString() {
+    final StringBuilder sb = new StringBuilder("Darcula startup profile");
+    if (!myEnabled) {
+      return sb.append(" (disabled, use -D").append(ENABLED_PROPERTY).append("=true)").toString();
+    }
+    for (Phase phase : myPhases) {
+      sb.append("\n  ").append(phase);
+    }
+    return sb.append("\n  total: ").append(getTotalNanos() / 1000).append(" us").toString();
+  }
+
+  private static long getAllocatedBytes() {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+      if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  public static final class Phase {
+    private final String myName;
+    private final long myDurationNanos;
+    private final long myAllocatedBytes;
+
+    Phase(String name, long durationNanos, long allocatedBytes) {
+      myName = name;
+      myDurationNanos = durationNanos;
+      myAllocatedBytes = allocatedBytes;
+    }
+
+    public String getName() {
+      return myName;
+    }
+
+    public long getDurationNanos() {
+      return myDurationNanos;
+    }
+
+    /**
+     * @return bytes allocated by the installing thread, or <code>-1</code> if the JVM can't tell
+     */
+    public long getAllocatedBytes() {
+      return myAllocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+      return myName + ": " + myDurationNanos / 1000 + " us, "
+             + (myAllocatedBytes < 0 ? "n/a" : myAllocatedBytes / 1024 + " KB");
+    }
+  }
+}
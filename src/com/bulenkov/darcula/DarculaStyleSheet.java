@@ -0,0 +1,133 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import javax.swing.text.html.StyleSheet;
+import java.io.*;
+import java.net.URL;
+
+/**
+ * darcula.css parsed once per JVM.
+ * <p>
+ * The shared sheet is read-only: every mutator throws <code>UnsupportedOperationException</code>
+ * once the rules are loaded. Each install gets a cheap child sheet that links to it via
+ * {@link #createDefaultStyles()}, so rules added through <code>HTMLEditorKit.getStyleSheet()</code>
+ * stay local to one <code>AppContext</code>.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class DarculaStyleSheet extends StyleSheet {
+  private static volatile DarculaStyleSheet ourShared;
+
+  private boolean myFrozen;
+
+  private DarculaStyleSheet() {
+  }
+
+  static DarculaStyleSheet getShared() throws IOException {
+    DarculaStyleSheet sheet = ourShared;
+    if (sheet == null) {
+      synchronized (DarculaStyleSheet.class) {
+        sheet = ourShared;
+        if (sheet == null) {
+          sheet = load();
+          ourShared = sheet;
+        }
+      }
+    }
+    return sheet;
+  }
+
+  /**
+   * @return new mutable sheet that inherits every rule of the shared one
+   */
+  static StyleSheet createDefaultStyles() throws IOException {
+    final StyleSheet styles = new StyleSheet();
+    styles.addStyleSheet(getShared());
+    return styles;
+  }
+
+  @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
+  private static DarculaStyleSheet load() throws IOException {
+    final DarculaStyleSheet sheet = new DarculaStyleSheet();
+    InputStream is = DarculaStyleSheet.class.getResourceAsStream("darcula.css");
+    Reader r = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+    sheet.loadRules(r, null);
+    r.close();
+    sheet.myFrozen = true;
+    return sheet;
+  }
+
+  private void checkNotFrozen() {
+    if (myFrozen) {
+      throw new UnsupportedOperationException("Shared Darcula style sheet is read-only");
+    }
+  }
+
+  @Override
+  public void addRule(String rule) {
+    checkNotFrozen();
+    super.addRule(rule);
+  }
+
+  @Override
+  public void loadRules(Reader in, URL ref) throws IOException {
+    checkNotFrozen();
+    super.loadRules(in, ref);
+  }
+
+  @Override
+  public void importStyleSheet(URL url) {
+    checkNotFrozen();
+    super.importStyleSheet(url);
+  }
+
+  @Override
+  public void addStyleSheet(StyleSheet ss) {
+    checkNotFrozen();
+    super.addStyleSheet(ss);
+  }
+
+  @Override
+  public void removeStyleSheet(StyleSheet ss) {
+    checkNotFrozen();
+    super.removeStyleSheet(ss);
+  }
+
+  @Override
+  public void removeStyle(String nm) {
+    checkNotFrozen();
+    super.removeStyle(nm);
+  }
+
+  @Override
+  public void setBase(URL base) {
+    checkNotFrozen();
+    super.setBase(base);
+  }
+
+  @Override
+  public void setBaseFontSize(int sz) {
+    checkNotFrozen();
+    super.setBaseFontSize(sz);
+  }
+
+  @Override
+  public void setBaseFontSize(String size) {
+    checkNotFrozen();
+    super.setBaseFontSize(size);
+  }
+}
@@ -15,50 +15,139 @@
  */
 package com.bulenkov.darcula;
 
-import com.bulenkov.iconloader.util.ColorUtil;
 import com.bulenkov.iconloader.util.GraphicsConfig;
 import com.bulenkov.iconloader.util.Gray;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
 import javax.swing.plaf.ComponentUI;
 import javax.swing.plaf.basic.BasicTableHeaderUI;
-import javax.swing.table.JTableHeader;
-import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
 import java.awt.*;
-import java.util.Enumeration;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 
 /**
  * @author Konstantin Bulenkov
  */
 public class DarculaTableHeaderUI extends BasicTableHeaderUI {
+  /** Right edges of the columns, <code>null</code> until the next paint after a column model change */
+  private int[] myColumnEnds;
+  private TableColumnModel myListenedModel;
+
+  private BufferedImage myBackgroundStrip;
+  private int myStripHeight;
+  private int myStripBackground;
+  private int myStripScale;
+
+  private final TableColumnModelListener myColumnModelListener = new TableColumnModelListener() {
+    @Override
+    public void columnAdded(TableColumnModelEvent e) {
+      myColumnEnds = null;
+    }
+
+    @Override
+    public void columnRemoved(TableColumnModelEvent e) {
+      myColumnEnds = null;
+    }
+
+    @Override
+    public void columnMoved(TableColumnModelEvent e) {
+      myColumnEnds = null;
+    }
+
+    @Override
+    public void columnMarginChanged(ChangeEvent e) {
+      // also fired when a column is resized
+      myColumnEnds = null;
+    }
+
+    @Override
+    public void columnSelectionChanged(ListSelectionEvent e) {
+    }
+  };
+
+  private final PropertyChangeListener myColumnModelChangeListener = new PropertyChangeListener() {
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+      listenToColumnModel(header.getColumnModel());
+    }
+  };
 
   @SuppressWarnings({"MethodOverridesStaticMethodOfSuperclass", "UnusedDeclaration"})
   public static ComponentUI createUI(JComponent c) {
     return new DarculaTableHeaderUI();
   }
 
+  @Override
+  protected void installListeners() {
+    super.installListeners();
+    header.addPropertyChangeListener("columnModel", myColumnModelChangeListener);
+    listenToColumnModel(header.getColumnModel());
+  }
+
+  @Override
+  protected void uninstallListeners() {
+    header.removePropertyChangeListener("columnModel", myColumnModelChangeListener);
+    listenToColumnModel(null);
+    myBackgroundStrip = null;
+    super.uninstallListeners();
+  }
+
+  private void listenToColumnModel(TableColumnModel model) {
+    if (myListenedModel != null) {
+      myListenedModel.removeColumnModelListener(myColumnModelListener);
+    }
+    myListenedModel = model;
+    if (model != null) {
+      model.addColumnModelListener(myColumnModelListener);
+    }
+    myColumnEnds = null;
+  }
+
   @Override
   public void paint(Graphics g2, JComponent c) {
     final Graphics2D g = (Graphics2D)g2;
     final GraphicsConfig config = new GraphicsConfig(g);
     final Color bg = c.getBackground();
-    g.setPaint(new GradientPaint(0, 0, ColorUtil.shift(bg, 1.4), 0, c.getHeight(), ColorUtil.shift(bg, 0.9)));
     final int h = c.getHeight();
     final int w = c.getWidth();
-    g.fillRect(0,0, w, h);
-    g.setPaint(ColorUtil.shift(bg, 0.75));
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = new Rectangle(0, 0, w, h);
+    }
+    final int clipLeft = Math.max(0, clip.x);
+    final int clipRight = Math.min(w, clip.x + clip.width);
+
+    if (clipRight > clipLeft) {
+      final int scale = DarculaFocusRing.getDeviceScale(g);
+      if (scale != 0 && h > 0 && AlphaComposite.SrcOver.equals(g.getComposite())) {
+        final BufferedImage strip = getBackgroundStrip(bg, h, scale);
+        g.drawImage(strip, clipLeft, 0, clipRight, h, 0, 0, strip.getWidth(), strip.getHeight(), null);
+      }
+      else {
+        g.setPaint(new GradientPaint(0, 0, DarculaPalette.shift(bg, 1.4), 0, h, DarculaPalette.shift(bg, 0.9)));
+        g.fillRect(clipLeft, 0, clipRight - clipLeft, h);
+      }
+    }
+    g.setPaint(DarculaPalette.shift(bg, 0.75));
     g.drawLine(0, h-1, w, h-1);
     g.drawLine(w-1, 0, w-1, h-1);
 
-    final Enumeration<TableColumn> columns = ((JTableHeader)c).getColumnModel().getColumns();
-
-    final Color lineColor = ColorUtil.shift(bg, 0.7);
-    final Color shadow = Gray._255.withAlpha(30);
-    int offset = 0;
-    while (columns.hasMoreElements()) {
-      final TableColumn column = columns.nextElement();
-      if (columns.hasMoreElements() && column.getWidth() > 0) {
-        offset += column.getWidth();
+    final int[] ends = getColumnEnds();
+    final Color lineColor = DarculaPalette.shift(bg, 0.7);
+    final Color shadow = DarculaPalette.toAlpha(Gray._255, 30);
+    // separators are drawn at end - 1 and end, there is none after the last column
+    for (int i = firstColumnEndingAfter(ends, clip.x - 1); i < ends.length - 1; i++) {
+      final int offset = ends[i];
+      if (offset - 1 >= clip.x + clip.width) {
+        break;
+      }
+      if (offset != (i == 0 ? 0 : ends[i - 1])) {
         g.setColor(lineColor);
         g.drawLine(offset-1, 1, offset-1, h-3);
         g.setColor(shadow);
@@ -70,4 +159,62 @@ public class DarculaTableHeaderUI extends BasicTableHeaderUI {
 
     super.paint(g, c);
   }
+
+  private int[] getColumnEnds() {
+    int[] ends = myColumnEnds;
+    if (ends == null) {
+      final TableColumnModel model = header.getColumnModel();
+      ends = new int[model.getColumnCount()];
+      int offset = 0;
+      for (int i = 0; i < ends.length; i++) {
+        offset += Math.max(0, model.getColumn(i).getWidth());
+        ends[i] = offset;
+      }
+      myColumnEnds = ends;
+    }
+    return ends;
+  }
+
+  /**
+   * @return index of the first column whose right edge is at or after <code>x</code>
+   */
+  private static int firstColumnEndingAfter(int[] ends, int x) {
+    int low = 0;
+    int high = ends.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (ends[mid] < x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * The header gradient is vertical, so one column of pixels is stretched over the clip.
+   */
+  private BufferedImage getBackgroundStrip(Color bg, int h, int scale) {
+    final int rgb = bg.getRGB();
+    if (myBackgroundStrip != null && myStripHeight == h && myStripBackground == rgb && myStripScale == scale) {
+      return myBackgroundStrip;
+    }
+    final BufferedImage strip = new BufferedImage(scale, h * scale, BufferedImage.TYPE_INT_ARGB_PRE);
+    final Graphics2D g = strip.createGraphics();
+    try {
+      g.scale(scale, scale);
+      g.setPaint(new GradientPaint(0, 0, DarculaPalette.shift(bg, 1.4), 0, h, DarculaPalette.shift(bg, 0.9)));
+      g.fillRect(0, 0, 1, h);
+    }
+    finally {
+      g.dispose();
+    }
+    myBackgroundStrip = strip;
+    myStripHeight = h;
+    myStripBackground = rgb;
+    myStripScale = scale;
+    return strip;
+  }
 }
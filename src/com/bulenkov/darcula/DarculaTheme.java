@@ -0,0 +1,211 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.iconloader.util.Gray;
+
+import javax.swing.*;
+import java.awt.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+/**
+ * Colors read by Darcula delegates at paint time, resolved once from <code>UIManager</code>.
+ * <p>
+ * Painting code reads the final fields of {@link #get()} instead of doing a string-keyed lookup
+ * in the synchronized <code>UIDefaults</code> table on every frame. The snapshot is dropped when
+ * the look and feel changes or a default is put into <code>UIManager</code>, and rebuilt on the
+ * next {@link #get()}.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaTheme {
+  private static volatile DarculaTheme ourCurrent;
+  private static boolean ourListening;
+  private static UIDefaults ourListenedDefaults;
+
+  private static final PropertyChangeListener INVALIDATOR = new PropertyChangeListener() {
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+      if ("lookAndFeel".equals(evt.getPropertyName())) {
+        listenToLookAndFeelDefaults();
+      }
+      invalidate();
+    }
+  };
+
+  public final Color textForeground;
+
+  public final Color buttonColor1;
+  public final Color buttonColor2;
+  public final Color buttonSelectionColor1;
+  public final Color buttonSelectionColor2;
+  public final Color buttonSelectedForeground;
+  public final Color buttonDisabledTextShadow;
+  public final Color buttonDisabledText;
+
+  public final Color checkBoxInactiveFillColor;
+  public final Color checkBoxBorderColor1;
+  public final Color checkBoxBorderColor2;
+  public final Color checkBoxDisabledBorderColor1;
+  public final Color checkBoxDisabledBorderColor2;
+  public final Color checkBoxBackgroundColor1;
+  public final Color checkBoxBackgroundColor2;
+  public final Color checkBoxCheckSignColor;
+  public final Color checkBoxCheckSignColorDisabled;
+  public final Color checkBoxShadowColor;
+  public final Color checkBoxShadowColorDisabled;
+  public final Color checkBoxFocusedArmedBackgroundColor1;
+  public final Color checkBoxFocusedArmedBackgroundColor2;
+  public final Color checkBoxFocusedBackgroundColor1;
+  public final Color checkBoxFocusedBackgroundColor2;
+
+  public final Color radioSelectionEnabledColor;
+  public final Color radioSelectionDisabledColor;
+  public final Color radioSelectionEnabledShadowColor;
+  public final Color radioSelectionDisabledShadowColor;
+
+  public final Color comboArrowFillColor;
+  public final Color comboArrowFocusedFillColor;
+
+  public final Color spinnerEnabledButtonColor;
+  public final Color spinnerDisabledButtonColor;
+
+  public final Color sliderTrackBackground;
+  public final Color sliderSelectedTrackColor;
+  public final Color sliderDisabledTickColor;
+  public final Color sliderThumbBorderColor;
+  public final Color sliderThumbBorderColorDisabled;
+
+  public final Color menuBarBorderColor;
+  public final Color menuBarBorderShadowColor;
+
+  public final Color internalFrameBorderColor;
+  public final Color titlePaneButtonColor;
+  public final Color titlePaneBorderColorTop;
+  public final Color titlePaneBorderColorLeft;
+  public final Color titlePaneBorderColorBottom;
+  public final Color titlePaneSelectedBorderColorTop;
+  public final Color titlePaneSelectedBorderColorLeft;
+  public final Color titlePaneSelectedBorderColorBottom;
+
+  private DarculaTheme() {
+    textForeground = color("darcula.textForeground", null);
+
+    buttonColor1 = color("Button.darcula.color1", null);
+    buttonColor2 = color("Button.darcula.color2", null);
+    buttonSelectionColor1 = color("Button.darcula.selection.color1", null);
+    buttonSelectionColor2 = color("Button.darcula.selection.color2", null);
+    buttonSelectedForeground = color("Button.darcula.selectedButtonForeground", null);
+    buttonDisabledTextShadow = color("Button.darcula.disabledText.shadow", null);
+    buttonDisabledText = color("Button.disabledText", null);
+
+    checkBoxInactiveFillColor = color("CheckBox.darcula.inactiveFillColor", Gray._40.withAlpha(180));
+    checkBoxBorderColor1 = color("CheckBox.darcula.borderColor1", Gray._120.withAlpha(0x5a));
+    checkBoxBorderColor2 = color("CheckBox.darcula.borderColor2", Gray._105.withAlpha(90));
+    checkBoxDisabledBorderColor1 = color("CheckBox.darcula.disabledBorderColor1", Gray._120.withAlpha(90));
+    checkBoxDisabledBorderColor2 = color("CheckBox.darcula.disabledBorderColor2", Gray._105.withAlpha(90));
+    checkBoxBackgroundColor1 = color("CheckBox.darcula.backgroundColor1", Gray._110);
+    checkBoxBackgroundColor2 = color("CheckBox.darcula.backgroundColor2", Gray._95);
+    checkBoxCheckSignColor = color("CheckBox.darcula.checkSignColor", Gray._170);
+    checkBoxCheckSignColorDisabled = color("CheckBox.darcula.checkSignColorDisabled", Gray._120);
+    checkBoxShadowColor = color("CheckBox.darcula.shadowColor", Gray._30);
+    checkBoxShadowColorDisabled = color("CheckBox.darcula.shadowColorDisabled", Gray._60);
+    checkBoxFocusedArmedBackgroundColor1 = color("CheckBox.darcula.focusedArmed.backgroundColor1", Gray._100);
+    checkBoxFocusedArmedBackgroundColor2 = color("CheckBox.darcula.focusedArmed.backgroundColor2", Gray._55);
+    checkBoxFocusedBackgroundColor1 = color("CheckBox.darcula.focused.backgroundColor1", Gray._120);
+    checkBoxFocusedBackgroundColor2 = color("CheckBox.darcula.focused.backgroundColor2", Gray._75);
+
+    radioSelectionEnabledColor = color("RadioButton.darcula.selectionEnabledColor", null);
+    radioSelectionDisabledColor = color("RadioButton.darcula.selectionDisabledColor", null);
+    radioSelectionEnabledShadowColor = color("RadioButton.darcula.selectionEnabledShadowColor", null);
+    radioSelectionDisabledShadowColor = color("RadioButton.darcula.selectionDisabledShadowColor", null);
+
+    comboArrowFillColor = color("ComboBox.darcula.arrowFillColor", null);
+    comboArrowFocusedFillColor = color("ComboBox.darcula.arrowFocusedFillColor", null);
+
+    spinnerEnabledButtonColor = color("Spinner.darcula.enabledButtonColor", null);
+    spinnerDisabledButtonColor = color("Spinner.darcula.disabledButtonColor", null);
+
+    sliderTrackBackground = color("Slider.trackBackground", null);
+    sliderSelectedTrackColor = color("Slider.selectedTrackColor", null);
+    sliderDisabledTickColor = color("Slider.disabledTickColor", null);
+    sliderThumbBorderColor = color("Slider.thumbBorderColor", null);
+    sliderThumbBorderColorDisabled = color("Slider.thumbBorderColorDisabled", null);
+
+    menuBarBorderColor = color("MenuBar.darcula.borderColor", null);
+    menuBarBorderShadowColor = color("MenuBar.darcula.borderShadowColor", null);
+
+    internalFrameBorderColor = color("InternalFrame.darcula.borderColor", null);
+    titlePaneButtonColor = color("InternalFrameTitlePane.darcula.buttonColor", null);
+    titlePaneBorderColorTop = color("InternalFrameTitlePane.darcula.borderColorTop", null);
+    titlePaneBorderColorLeft = color("InternalFrameTitlePane.darcula.borderColorLeft", null);
+    titlePaneBorderColorBottom = color("InternalFrameTitlePane.darcula.borderColorBottom", null);
+    titlePaneSelectedBorderColorTop = color("InternalFrameTitlePane.darcula.selected.borderColorTop", null);
+    titlePaneSelectedBorderColorLeft = color("InternalFrameTitlePane.darcula.selected.borderColorLeft", null);
+    titlePaneSelectedBorderColorBottom = color("InternalFrameTitlePane.darcula.selected.borderColorBottom", null);
+  }
+
+  public static DarculaTheme get() {
+    DarculaTheme theme = ourCurrent;
+    if (theme == null) {
+      startListening();
+      theme = new DarculaTheme();
+      ourCurrent = theme;
+    }
+    return theme;
+  }
+
+  /**
+   * Drops the current snapshot. Called automatically on look and feel and <code>UIManager</code>
+   * changes; call it after modifying the look and feel defaults table directly.
+   */
+  public static void invalidate() {
+    ourCurrent = null;
+    DarculaPalette.flush();
+    DarculaFocusRing.flush();
+    DarculaButtonCache.flush();
+    DarculaSpriteSheet.flush();
+    DarculaThumbCache.flush();
+  }
+
+  private static Color color(String key, Color defaultValue) {
+    final Color color = UIManager.getColor(key);
+    return color == null ? defaultValue : color;
+  }
+
+  private static synchronized void startListening() {
+    if (!ourListening) {
+      ourListening = true;
+      UIManager.addPropertyChangeListener(INVALIDATOR);
+      UIManager.getDefaults().addPropertyChangeListener(INVALIDATOR);
+      listenToLookAndFeelDefaults();
+    }
+  }
+
+  private static synchronized void listenToLookAndFeelDefaults() {
+    final UIDefaults defaults = UIManager.getLookAndFeelDefaults();
+    if (defaults != ourListenedDefaults) {
+      if (ourListenedDefaults != null) {
+        ourListenedDefaults.removePropertyChangeListener(INVALIDATOR);
+      }
+      if (defaults != null) {
+        defaults.addPropertyChangeListener(INVALIDATOR);
+      }
+      ourListenedDefaults = defaults;
+    }
+  }
+}
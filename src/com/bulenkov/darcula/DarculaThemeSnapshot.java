@@ -0,0 +1,251 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import com.bulenkov.darcula.util.Registry;
+
+import javax.swing.plaf.ColorUIResource;
+import javax.swing.plaf.InsetsUIResource;
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Pre-typed binary form of <code>darcula.properties</code> merged with the OS overlay.
+ * <p>
+ * Snapshots are produced at build time by {@link #main(String[])} and are read back by
+ * {@link DarculaLaf} in one pass, without running the value parser on every key.
+ * Each snapshot stores a checksum of the properties files it was compiled from; if the
+ * properties visible on the classpath differ (overridden or edited), the snapshot is
+ * ignored and the text files are parsed as before.
+ * <p>
+ * Set <code>darcula.theme.snapshot.disabled=true</code> to always parse the text files.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class DarculaThemeSnapshot {
+  static final String[] OS_SUFFIXES = {"mac", "windows", "linux"};
+
+  private static final int MAGIC = 0xDA4C7A01;
+  private static final int VERSION = 1;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte COLOR = 2;
+  private static final byte INTEGER = 3;
+  private static final byte BOOLEAN = 4;
+  private static final byte INSETS = 5;
+  private static final byte BORDER = 6;
+
+  private DarculaThemeSnapshot() {
+  }
+
+  static String getSnapshotName(String osSuffix) {
+    return "darcula_" + osSuffix + ".snapshot";
+  }
+
+  /**
+   * @return parsed values in snapshot order, or <code>null</code> if there is no usable snapshot
+   */
+  static Map<String, Object> load(String osSuffix) {
+    if (Registry.is("darcula.theme.snapshot.disabled")) {
+      return null;
+    }
+    final InputStream stream = DarculaThemeSnapshot.class.getResourceAsStream(getSnapshotName(osSuffix));
+    if (stream == null) {
+      return null;
+    }
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+          return null;
+        }
+        final long checksum = in.readLong();
+        if (checksum != computeChecksum(osSuffix)) {
+          return null;
+        }
+        final int size = in.readInt();
+        final Map<String, Object> values = new LinkedHashMap<String, Object>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+          final String key = in.readUTF();
+          values.put(key, readValue(in));
+        }
+        return values;
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    final byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        return in.readUTF();
+      case COLOR:
+        return new ColorUIResource(new Color(in.readInt(), true));
+      case INTEGER:
+        return in.readInt();
+      case BOOLEAN:
+        return in.readBoolean();
+      case INSETS:
+        return new InsetsUIResource(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+      case BORDER:
+        return DarculaLaf.lazyInstance(in.readUTF());
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  static void write(String osSuffix, Map<String, Object> values, OutputStream stream) throws IOException {
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(computeChecksum(osSuffix));
+    out.writeInt(values.size());
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      out.writeUTF(entry.getKey());
+      writeValue(out, entry.getValue());
+    }
+    out.flush();
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      out.writeUTF((String)value);
+    } else if (value instanceof Color) {
+      out.writeByte(COLOR);
+      out.writeInt(((Color)value).getRGB());
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer)value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    } else if (value instanceof Insets) {
+      final Insets insets = (Insets)value;
+      out.writeByte(INSETS);
+      out.writeInt(insets.top);
+      out.writeInt(insets.left);
+      out.writeInt(insets.bottom);
+      out.writeInt(insets.right);
+    } else if (value instanceof BorderClass) {
+      out.writeByte(BORDER);
+      out.writeUTF(((BorderClass)value).name);
+    } else {
+      throw new IOException("Can't write " + value.getClass().getName());
+    }
+  }
+
+  /**
+   * Same as {@link DarculaLaf#parseValue(String, String)}, but border classes are checked
+   * for existence, so a typo falls back to a plain string like it does at runtime.
+   */
+  private static Object compileValue(String key, String value) {
+    if (key.endsWith(".border") && !"null".equals(value)) {
+      try {
+        Class.forName(value, false, DarculaThemeSnapshot.class.getClassLoader());
+        return new BorderClass(value);
+      }
+      catch (ClassNotFoundException e) {
+        return value;
+      }
+    }
+    return DarculaLaf.parseValue(key, value);
+  }
+
+  private static final class BorderClass {
+    private final String name;
+
+    private BorderClass(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Checksum of the properties files exactly as they are seen on the classpath.
+   */
+  static long computeChecksum(String osSuffix) throws IOException {
+    final CRC32 crc = new CRC32();
+    update(crc, "darcula.properties");
+    update(crc, "darcula_" + osSuffix + ".properties");
+    return crc.getValue();
+  }
+
+  private static void update(CRC32 crc, String resource) throws IOException {
+    final InputStream stream = DarculaThemeSnapshot.class.getResourceAsStream(resource);
+    if (stream == null) {
+      throw new FileNotFoundException(resource);
+    }
+    try {
+      final byte[] buffer = new byte[4096];
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Build step: compiles the properties files into snapshots for every supported OS.
+   * <pre>
+   *   java -Djava.awt.headless=true -cp darcula.jar com.bulenkov.darcula.DarculaThemeSnapshot src/com/bulenkov/darcula
+   * </pre>
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: DarculaThemeSnapshot <output directory>");
+      System.exit(1);
+    }
+    final File dir = new File(args[0]);
+    for (String osSuffix : OS_SUFFIXES) {
+      final Properties properties = DarculaLaf.loadProperties(osSuffix);
+      if (properties == null) {
+        throw new IOException("Can't read properties for " + osSuffix);
+      }
+      final List<String> keys = new ArrayList<String>(properties.stringPropertyNames());
+      Collections.sort(keys);
+      final Map<String, Object> sorted = new LinkedHashMap<String, Object>();
+      for (String key : keys) {
+        sorted.put(key, compileValue(key, properties.getProperty(key)));
+      }
+      final File file = new File(dir, getSnapshotName(osSuffix));
+      final OutputStream out = new FileOutputStream(file);
+      try {
+        write(osSuffix, sorted, out);
+      }
+      finally {
+        out.close();
+      }
+      System.out.println("Written " + file + " (" + sorted.size() + " keys)");
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered scroll bar thumbs.
+ * <p>
+ * A thumb is a gradient filled rect with a round rect border. The gradient runs across the scroll
+ * axis, so the thumb only changes along the axis at its rounded ends. Each combination of colors,
+ * thickness and device scale is rendered once as a short thumb. On paint, the two ends are blitted
+ * and the middle row is stretched to the thumb length. The fade-out animation of a scroll bar
+ * uses a small fixed set of colors, so every animation frame is a cache hit after the first fade.
+ * <p>
+ * Like {@link DarculaButtonCache}, the cache is used only for integer device scales and the
+ * default composite. Otherwise {@link #paint} returns <code>false</code> and the caller paints
+ * directly.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaThumbCache {
+  private static final int SIZE = 64;
+  private static final int MAX_THICKNESS = 128;
+
+  private static volatile Entry[] ourEntries = new Entry[SIZE];
+
+  private DarculaThumbCache() {
+  }
+
+  /**
+   * Same as filling <code>(x + 1, y + 1, width - 1, height - 1)</code> with a gradient from
+   * <code>start</code> at 1 to <code>end</code> at <code>width + 1</code> (vertical) or
+   * <code>height + 1</code> (horizontal), and then drawing a round rect border
+   * <code>(x, y, width, height)</code> with the default stroke and the current rendering hints.
+   */
+  public static boolean paint(Graphics2D g, boolean vertical, Color start, Color end, Color border,
+                              int x, int y, int width, int height, int arc) {
+    final int thickness = vertical ? width : height;
+    final int length = vertical ? height : width;
+    final int offset = vertical ? x : y;
+    final int along = vertical ? y : x;
+    final int cap = arc + 2;
+    if (thickness <= 0 || thickness > MAX_THICKNESS || offset < 0 || offset > MAX_THICKNESS
+        || along < 1 || length < 2 * cap + 1
+        || !AlphaComposite.SrcOver.equals(g.getComposite())) {
+      return false;
+    }
+    final int scale = DarculaFocusRing.getDeviceScale(g);
+    if (scale == 0) {
+      return false;
+    }
+
+    final int flags = (vertical ? 1 : 0)
+                      | (RenderingHints.VALUE_ANTIALIAS_ON.equals(g.getRenderingHint(RenderingHints.KEY_ANTIALIASING)) ? 2 : 0)
+                      | (RenderingHints.VALUE_STROKE_PURE.equals(g.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL)) ? 4 : 0);
+    final int rgb1 = start.getRGB();
+    final int rgb2 = end.getRGB();
+    final int borderRgb = border.getRGB();
+
+    int h = flags;
+    h = 31 * h + rgb1;
+    h = 31 * h + rgb2;
+    h = 31 * h + borderRgb;
+    h = 31 * h + offset;
+    h = 31 * h + along;
+    h = 31 * h + thickness;
+    h = 31 * h + arc;
+    h = 31 * h + scale;
+    final int index = h * 0x9E3779B9 >>> 26;
+
+    final Entry[] entries = ourEntries;
+    Entry entry = entries[index];
+    if (entry == null || !entry.matches(flags, rgb1, rgb2, borderRgb, offset, along, thickness, arc, scale)) {
+      entry = new Entry(flags, rgb1, rgb2, borderRgb, offset, along, thickness, arc, scale,
+                        render(g, vertical, start, end, border, offset, along, thickness, arc, scale));
+      entries[index] = entry;
+    }
+
+    // the image covers the thumb from the origin plus two pixels past its far edges
+    final BufferedImage image = entry.myImage;
+    final int across = offset + thickness + 2;
+    final int shortLength = 2 * cap + 1;
+    blit(g, image, vertical, across, 0, along + cap, 0, along + cap, scale);
+    blit(g, image, vertical, across, along + cap, along + length - cap, along + cap, along + cap + 1, scale);
+    blit(g, image, vertical, across, along + length - cap, along + length + 2, along + shortLength - cap,
+         along + shortLength + 2, scale);
+    return true;
+  }
+
+  static void flush() {
+    ourEntries = new Entry[SIZE];
+  }
+
+  private static void blit(Graphics2D g, BufferedImage image, boolean vertical, int across,
+                           int from, int to, int sourceFrom, int sourceTo, int scale) {
+    if (vertical) {
+      g.drawImage(image, 0, from, across, to, 0, sourceFrom * scale, across * scale, sourceTo * scale, null);
+    }
+    else {
+      g.drawImage(image, from, 0, to, across, sourceFrom * scale, 0, sourceTo * scale, across * scale, null);
+    }
+  }
+
+  private static BufferedImage render(Graphics2D target, boolean vertical, Color start, Color end, Color border,
+                                      int offset, int along, int thickness, int arc, int scale) {
+    final int across = offset + thickness + 2;
+    final int length = 2 * (arc + 2) + 1;
+    final int imageLength = along + length + 2;
+    final BufferedImage image = vertical
+                                ? new BufferedImage(across * scale, imageLength * scale, BufferedImage.TYPE_INT_ARGB_PRE)
+                                : new BufferedImage(imageLength * scale, across * scale, BufferedImage.TYPE_INT_ARGB_PRE);
+    final Graphics2D g = image.createGraphics();
+    try {
+      g.scale(scale, scale);
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, target.getRenderingHint(RenderingHints.KEY_ANTIALIASING));
+      g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, target.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL));
+      final int x = vertical ? offset : along;
+      final int y = vertical ? along : offset;
+      final int width = vertical ? thickness : length;
+      final int height = vertical ? length : thickness;
+      g.setPaint(vertical ? new GradientPaint(1, 0, start, width + 1, 0, end)
+                          : new GradientPaint(0, 1, start, 0, height + 1, end));
+      g.fillRect(x + 1, y + 1, width - 1, height - 1);
+      g.setColor(border);
+      g.drawRoundRect(x, y, width, height, arc, arc);
+    }
+    finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  private static final class Entry {
+    private final int myFlags;
+    private final int myRgb1;
+    private final int myRgb2;
+    private final int myBorderRgb;
+    private final int myOffset;
+    private final int myAlong;
+    private final int myThickness;
+    private final int myArc;
+    private final int myScale;
+    private final BufferedImage myImage;
+
+    Entry(int flags, int rgb1, int rgb2, int borderRgb, int offset, int along, int thickness, int arc, int scale,
+          BufferedImage image) {
+      myFlags = flags;
+      myRgb1 = rgb1;
+      myRgb2 = rgb2;
+      myBorderRgb = borderRgb;
+      myOffset = offset;
+      myAlong = along;
+      myThickness = thickness;
+      myArc = arc;
+      myScale = scale;
+      myImage = image;
+    }
+
+    boolean matches(int flags, int rgb1, int rgb2, int borderRgb, int offset, int along, int thickness, int arc,
+                    int scale) {
+      return myFlags == flags && myRgb1 == rgb1 && myRgb2 == rgb2 && myBorderRgb == borderRgb
+             && myOffset == offset && myAlong == along && myThickness == thickness && myArc == arc
+             && myScale == scale;
+    }
+  }
+}
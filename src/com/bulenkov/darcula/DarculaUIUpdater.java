@@ -0,0 +1,349 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import javax.swing.*;
+import javax.swing.plaf.UIResource;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.util.*;
+
+/**
+ * Switches the look and feel of all open windows without recreating every UI delegate.
+ * <p>
+ * The defaults of the old and the new look and feel are diffed. A component gets a new delegate
+ * (<code>updateUI()</code>) only when its delegate class or a key read by the delegate at install
+ * time changed. Changed colors, fonts, borders and margins are set on the component in place, and
+ * changed <code>*.darcula.*</code> keys, which Darcula delegates read at paint time, just repaint.
+ * <p>
+ * Use it instead of <code>UIManager.setLookAndFeel</code> followed by
+ * <code>SwingUtilities.updateComponentTreeUI</code>. Must be called on the event dispatch thread.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class DarculaUIUpdater {
+  /**
+   * Keys that may be applied through public component setters. The value is replaced only if the
+   * component still holds a <code>UIResource</code>, like the delegates do. Which of them have a
+   * setter depends on the component, see {@link #getInPlaceSuffixes(JComponent)}.
+   */
+  private static final Set<String> IN_PLACE_SUFFIXES = new HashSet<String>(Arrays.asList(
+    "background", "foreground", "font", "border", "margin",
+    "selectionBackground", "selectionForeground", "caretForeground", "inactiveForeground", "gridColor"
+  ));
+  private static final Set<String> COMPONENT_SUFFIXES = new HashSet<String>(Arrays.asList(
+    "background", "foreground", "font", "border"
+  ));
+  private static final Set<String> BUTTON_SUFFIXES = new HashSet<String>(Arrays.asList(
+    "background", "foreground", "font", "border", "margin"
+  ));
+  private static final Set<String> TEXT_SUFFIXES = new HashSet<String>(Arrays.asList(
+    "background", "foreground", "font", "border", "margin",
+    "selectionBackground", "selectionForeground", "caretForeground", "inactiveForeground"
+  ));
+  private static final Set<String> TABLE_SUFFIXES = new HashSet<String>(Arrays.asList(
+    "background", "foreground", "font", "border", "selectionBackground", "selectionForeground", "gridColor"
+  ));
+  private static final Set<String> LIST_SUFFIXES = new HashSet<String>(Arrays.asList(
+    "background", "foreground", "font", "border", "selectionBackground", "selectionForeground"
+  ));
+
+  private DarculaUIUpdater() {
+  }
+
+  public static Result setLookAndFeel(String className)
+    throws ClassNotFoundException, InstantiationException, IllegalAccessException, UnsupportedLookAndFeelException {
+    final Class<?> lafClass = Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+    return setLookAndFeel((LookAndFeel)lafClass.newInstance());
+  }
+
+  public static Result setLookAndFeel(LookAndFeel laf) throws UnsupportedLookAndFeelException {
+    final LookAndFeel oldLaf = UIManager.getLookAndFeel();
+    final UIDefaults oldDefaults = UIManager.getLookAndFeelDefaults();
+    final Map<Object, Object> oldValues = oldDefaults == null ? Collections.emptyMap() : new HashMap<Object, Object>(oldDefaults);
+
+    UIManager.setLookAndFeel(laf);
+
+    final UIDefaults newDefaults = UIManager.getLookAndFeelDefaults();
+    final Map<Object, Object> newValues = new HashMap<Object, Object>(newDefaults);
+    final boolean sameLaf = oldLaf != null && oldLaf.getClass() == laf.getClass();
+    final Diff diff = new Diff(oldValues, newValues, sameLaf);
+    diff.compute(oldDefaults, newDefaults);
+
+    final Result result = new Result(diff.myChangedKeys);
+    if (diff.myChangedKeys == 0) {
+      return result;
+    }
+    for (Window window : Window.getWindows()) {
+      update(window, diff, result);
+      window.invalidate();
+      window.validate();
+      window.repaint();
+    }
+    return result;
+  }
+
+  private static void update(Component c, Diff diff, Result result) {
+    if (c instanceof JComponent) {
+      final JComponent jc = (JComponent)c;
+      final JPopupMenu popup = jc.getComponentPopupMenu();
+      if (popup != null) {
+        update(popup, diff, result);
+      }
+      update(jc, diff, result);
+    }
+    Component[] children = null;
+    if (c instanceof JMenu) {
+      children = ((JMenu)c).getMenuComponents();
+    }
+    else if (c instanceof Container) {
+      children = ((Container)c).getComponents();
+    }
+    if (children != null) {
+      for (Component child : children) {
+        update(child, diff, result);
+      }
+    }
+  }
+
+  private static void update(JComponent c, Diff diff, Result result) {
+    final String uiClassID = c.getUIClassID();
+    final String prefix = uiClassID.endsWith("UI") ? uiClassID.substring(0, uiClassID.length() - 2) : uiClassID;
+    if (diff.myChangedDelegates.contains(uiClassID)
+        || diff.myReinstallPrefixes.contains(prefix)
+        || (!diff.mySameLaf && hasRenderers(c))) {
+      c.updateUI();
+      result.myReinstalled++;
+      return;
+    }
+    final Set<String> changed = diff.myInPlaceKeys.get(prefix);
+    if (changed != null && !getInPlaceSuffixes(c).containsAll(changed)) {
+      // the delegate copies a key that has no setter on this component
+      diff.myReinstallPrefixes.add(prefix);
+      c.updateUI();
+      result.myReinstalled++;
+      return;
+    }
+    if (changed != null) {
+      updateInPlace(c, prefix, changed);
+      result.myUpdatedInPlace++;
+    }
+    else if (diff.myRepaintPrefixes.contains(prefix)) {
+      c.repaint();
+      result.myRepainted++;
+    }
+  }
+
+  /**
+   * Renderers and editors of these components are not part of the component tree, so they are
+   * only refreshed by the delegate itself.
+   */
+  private static boolean hasRenderers(JComponent c) {
+    return c instanceof JTable || c instanceof JTree || c instanceof JList || c instanceof JComboBox;
+  }
+
+  /**
+   * @return keys that {@link #updateInPlace} can apply to <code>c</code>
+   */
+  private static Set<String> getInPlaceSuffixes(JComponent c) {
+    if (c instanceof JTextComponent) return TEXT_SUFFIXES;
+    if (c instanceof JTable) return TABLE_SUFFIXES;
+    if (c instanceof JList) return LIST_SUFFIXES;
+    if (c instanceof AbstractButton) return BUTTON_SUFFIXES;
+    return COMPONENT_SUFFIXES;
+  }
+
+  private static void updateInPlace(JComponent c, String prefix, Set<String> changed) {
+    if (changed.contains("background") || changed.contains("foreground") || changed.contains("font")) {
+      LookAndFeel.installColorsAndFont(c, prefix + ".background", prefix + ".foreground", prefix + ".font");
+    }
+    if (changed.contains("border")) {
+      LookAndFeel.installBorder(c, prefix + ".border");
+    }
+    if (changed.contains("margin")) {
+      final Insets margin = UIManager.getInsets(prefix + ".margin");
+      if (c instanceof AbstractButton && isUIResource(((AbstractButton)c).getMargin())) {
+        ((AbstractButton)c).setMargin(margin);
+      }
+      else if (c instanceof JTextComponent && isUIResource(((JTextComponent)c).getMargin())) {
+        ((JTextComponent)c).setMargin(margin);
+      }
+    }
+    if (c instanceof JTextComponent) {
+      final JTextComponent text = (JTextComponent)c;
+      if (changed.contains("caretForeground") && isUIResource(text.getCaretColor())) {
+        text.setCaretColor(UIManager.getColor(prefix + ".caretForeground"));
+      }
+      if (changed.contains("selectionBackground") && isUIResource(text.getSelectionColor())) {
+        text.setSelectionColor(UIManager.getColor(prefix + ".selectionBackground"));
+      }
+      if (changed.contains("selectionForeground") && isUIResource(text.getSelectedTextColor())) {
+        text.setSelectedTextColor(UIManager.getColor(prefix + ".selectionForeground"));
+      }
+      if (changed.contains("inactiveForeground") && isUIResource(text.getDisabledTextColor())) {
+        text.setDisabledTextColor(UIManager.getColor(prefix + ".inactiveForeground"));
+      }
+    }
+    else if (c instanceof JTable) {
+      final JTable table = (JTable)c;
+      if (changed.contains("selectionBackground") && isUIResource(table.getSelectionBackground())) {
+        table.setSelectionBackground(UIManager.getColor(prefix + ".selectionBackground"));
+      }
+      if (changed.contains("selectionForeground") && isUIResource(table.getSelectionForeground())) {
+        table.setSelectionForeground(UIManager.getColor(prefix + ".selectionForeground"));
+      }
+      if (changed.contains("gridColor") && isUIResource(table.getGridColor())) {
+        table.setGridColor(UIManager.getColor(prefix + ".gridColor"));
+      }
+    }
+    else if (c instanceof JList) {
+      final JList list = (JList)c;
+      if (changed.contains("selectionBackground") && isUIResource(list.getSelectionBackground())) {
+        list.setSelectionBackground(UIManager.getColor(prefix + ".selectionBackground"));
+      }
+      if (changed.contains("selectionForeground") && isUIResource(list.getSelectionForeground())) {
+        list.setSelectionForeground(UIManager.getColor(prefix + ".selectionForeground"));
+      }
+    }
+    c.repaint();
+  }
+
+  private static boolean isUIResource(Object value) {
+    return value == null || value instanceof UIResource;
+  }
+
+  /**
+   * Classifies every changed key by its prefix (<code>Button</code> for <code>Button.font</code>).
+   */
+  private static final class Diff {
+    private final Map<Object, Object> myOld;
+    private final Map<Object, Object> myNew;
+    private final boolean mySameLaf;
+
+    private final Set<String> myChangedDelegates = new HashSet<String>();
+    private final Set<String> myReinstallPrefixes = new HashSet<String>();
+    private final Set<String> myRepaintPrefixes = new HashSet<String>();
+    private final Map<String, Set<String>> myInPlaceKeys = new HashMap<String, Set<String>>();
+    private int myChangedKeys;
+
+    Diff(Map<Object, Object> oldValues, Map<Object, Object> newValues, boolean sameLaf) {
+      myOld = oldValues;
+      myNew = newValues;
+      mySameLaf = sameLaf;
+    }
+
+    void compute(UIDefaults oldDefaults, UIDefaults newDefaults) {
+      final Set<Object> keys = new HashSet<Object>(myOld.keySet());
+      keys.addAll(myNew.keySet());
+      for (Object key : keys) {
+        // action maps are cached in the defaults by the delegates themselves
+        if (!(key instanceof String) || ((String)key).endsWith(".actionMap")) continue;
+        final Object oldValue = myOld.get(key);
+        final Object newValue = myNew.get(key);
+        if (isSame(oldValue, newValue)) continue;
+        if (isLazy(oldValue) || isLazy(newValue)) {
+          // one side may already be resolved, compare what components would actually get
+          if (isSame(resolve(oldDefaults, key, oldValue), resolve(newDefaults, key, newValue))) continue;
+        }
+        myChangedKeys++;
+        classify((String)key);
+      }
+    }
+
+    private void classify(String key) {
+      final int dot = key.indexOf('.');
+      if (dot < 0) {
+        if (key.endsWith("UI")) {
+          myChangedDelegates.add(key);
+        }
+        return;
+      }
+      final String prefix = key.substring(0, dot);
+      final String suffix = key.substring(dot + 1);
+      if (suffix.startsWith("darcula.")) {
+        myRepaintPrefixes.add(prefix);
+      }
+      else if (IN_PLACE_SUFFIXES.contains(suffix)) {
+        Set<String> suffixes = myInPlaceKeys.get(prefix);
+        if (suffixes == null) {
+          suffixes = new HashSet<String>();
+          myInPlaceKeys.put(prefix, suffixes);
+        }
+        suffixes.add(suffix);
+      }
+      else {
+        myReinstallPrefixes.add(prefix);
+      }
+    }
+
+    private static boolean isLazy(Object value) {
+      return value instanceof UIDefaults.LazyValue;
+    }
+
+    private static Object resolve(UIDefaults defaults, Object key, Object value) {
+      return defaults != null && isLazy(value) ? defaults.get(key) : value;
+    }
+
+    /**
+     * Values without <code>equals()</code>, like renderers and borders, are compared by identity,
+     * since a new instance may be configured differently.
+     */
+    private static boolean isSame(Object oldValue, Object newValue) {
+      if (oldValue == newValue) return true;
+      if (oldValue == null || newValue == null) return false;
+      return oldValue.equals(newValue);
+    }
+  }
+
+  public static final class Result {
+    private final int myChangedKeys;
+    private int myReinstalled;
+    private int myUpdatedInPlace;
+    private int myRepainted;
+
+    Result(int changedKeys) {
+      myChangedKeys = changedKeys;
+    }
+
+    public int getChangedKeys() {
+      return myChangedKeys;
+    }
+
+    /**
+     * @return components that got a new UI delegate
+     */
+    public int getReinstalled() {
+      return myReinstalled;
+    }
+
+    /**
+     * @return components whose colors, fonts, borders or margins were set without a new delegate
+     */
+    public int getUpdatedInPlace() {
+      return myUpdatedInPlace;
+    }
+
+    public int getRepainted() {
+      return myRepainted;
+    }
+
+    @Override
+    public String toString() {
+      return "changed keys: " + myChangedKeys + ", reinstalled: " + myReinstalled
+             + ", updated in place: " + myUpdatedInPlace + ", repainted: " + myRepainted;
+    }
+  }
+}
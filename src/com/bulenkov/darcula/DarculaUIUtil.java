@@ -29,7 +29,11 @@ public class DarculaUIUtil {
   public static final String MAC_FILL_BORDER = "MAC_FILL_BORDER";
   public static final int MAC_COMBO_BORDER_V_OFFSET = SystemInfo.isMacOSLion ? 1 : 0;
   private static final int WINDOWS_SCALE_FACTOR = Math.max(1, Toolkit.getDefaultToolkit().getScreenResolution() / 72);
+  private static final Color FOCUS_GLOW = new DoubleColor(new Color(35, 121, 212), new Color(96, 175, 255));
   private static Cursor INVERTED_TEXT_CURSOR;
+  /** How far the antialiased strokes of the focus ring reach outside and inside of its bounds */
+  private static final int FOCUS_RING_OUTER_WIDTH = 3;
+  private static final int FOCUS_RING_INNER_WIDTH = 3;
 
   public static void paintFocusRing(Graphics g, int x, int y, int width, int height) {
     paintFocusRing((Graphics2D) g, getGlow(), new Rectangle(x, y, width, height));
@@ -40,7 +44,7 @@ public class DarculaUIUtil {
   }
 
   private static Color getGlow() {
-    return new DoubleColor(new Color(35, 121, 212), new Color(96, 175, 255));
+    return FOCUS_GLOW;
   }
 
   public static void paintFocusRing(Graphics2D g2d, Color ringColor, Rectangle bounds) {
@@ -49,12 +53,18 @@ public class DarculaUIUtil {
 
   public static void paintFocusRing(Graphics2D g, Color ringColor, Rectangle bounds, boolean oval) {
     int correction = UIUtil.isUnderDarcula() ? 50 : 0;
+    if (!DarculaFocusRing.paint(g, ringColor, correction, bounds, oval)) {
+      doPaintFocusRing(g, ringColor, correction, bounds, oval);
+    }
+  }
+
+  static void doPaintFocusRing(Graphics2D g, Color ringColor, int correction, Rectangle bounds, boolean oval) {
     final Color[] colors = new Color[]{
-        ColorUtil.toAlpha(ringColor, 180 - correction),
-        ColorUtil.toAlpha(ringColor, 120 - correction),
-        ColorUtil.toAlpha(ringColor, 70  - correction),
-        ColorUtil.toAlpha(ringColor, 100 - correction),
-        ColorUtil.toAlpha(ringColor, 50  - correction)
+        DarculaPalette.toAlpha(ringColor, 180 - correction),
+        DarculaPalette.toAlpha(ringColor, 120 - correction),
+        DarculaPalette.toAlpha(ringColor, 70  - correction),
+        DarculaPalette.toAlpha(ringColor, 100 - correction),
+        DarculaPalette.toAlpha(ringColor, 50  - correction)
     };
 
     final Object oldAntialiasingValue = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
@@ -102,11 +112,11 @@ public class DarculaUIUtil {
   public static void paintSearchFocusRing(Graphics2D g, Rectangle bounds) {
     int correction = UIUtil.isUnderDarcula() ? 50 : 0;
     final Color[] colors = new Color[]{
-      ColorUtil.toAlpha(getGlow(), 180 - correction),
-      ColorUtil.toAlpha(getGlow(), 120 - correction),
-      ColorUtil.toAlpha(getGlow(), 70  - correction),
-      ColorUtil.toAlpha(getGlow(), 100 - correction),
-      ColorUtil.toAlpha(getGlow(), 50  - correction)
+      DarculaPalette.toAlpha(getGlow(), 180 - correction),
+      DarculaPalette.toAlpha(getGlow(), 120 - correction),
+      DarculaPalette.toAlpha(getGlow(), 70  - correction),
+      DarculaPalette.toAlpha(getGlow(), 100 - correction),
+      DarculaPalette.toAlpha(getGlow(), 50  - correction)
     };
 
     final Object oldAntialiasingValue = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
@@ -170,6 +180,37 @@ public class DarculaUIUtil {
     return getTreeExpandedIcon();
   }
 
+  /**
+   * @return widths of the bands along the edges of <code>c</code> covered by a focus ring painted
+   * around <code>ring</code> with corners of <code>arc</code> width, like the search field ring
+   */
+  public static Insets getFocusRingInsets(Component c, Rectangle ring, int arc) {
+    final int side = Math.max(FOCUS_RING_INNER_WIDTH, arc / 2 - FOCUS_RING_OUTER_WIDTH + 1);
+    return new Insets(ring.y + FOCUS_RING_INNER_WIDTH,
+                      ring.x + side,
+                      c.getHeight() - ring.y - ring.height + FOCUS_RING_INNER_WIDTH,
+                      c.getWidth() - ring.x - ring.width + side);
+  }
+
+  /**
+   * Queues a repaint of the bands along the edges of <code>c</code> that change when its focus
+   * ring appears or disappears. Falls back to a plain <code>repaint()</code> if the bands meet.
+   */
+  public static void repaintFocusRing(JComponent c, Insets band) {
+    final int w = c.getWidth();
+    final int h = c.getHeight();
+    final int innerWidth = w - band.left - band.right;
+    final int innerHeight = h - band.top - band.bottom;
+    if (innerWidth <= 0 || innerHeight <= 0) {
+      c.repaint();
+      return;
+    }
+    c.repaint(0, 0, w, band.top);
+    c.repaint(0, h - band.bottom, w, band.bottom);
+    c.repaint(0, band.top, band.left, innerHeight);
+    c.repaint(w - band.right, band.top, band.right, innerHeight);
+  }
+
   public static float getScale(final JComponent c) {
     final float scale;
     final Object sizeVariant = c.getClientProperty("JComponent.sizeVariant");
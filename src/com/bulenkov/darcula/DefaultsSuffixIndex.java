@@ -0,0 +1,98 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the last segment of every dotted defaults key of a base look and feel
+ * (<code>background</code> for <code>Button.background</code>) to the keys ending with it.
+ * <p>
+ * Global <code>darcula.&lt;suffix&gt;</code> settings are applied through this index, so an
+ * install touches only the keys that are actually rewritten. The index is built once per
+ * base look and feel class.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class DefaultsSuffixIndex {
+  private static final Map<Class<?>, DefaultsSuffixIndex> ourIndices = new ConcurrentHashMap<Class<?>, DefaultsSuffixIndex>();
+  private static final Object[] EMPTY = new Object[0];
+
+  private final Map<String, Object[]> myKeys;
+
+  private DefaultsSuffixIndex(Map<String, Object[]> keys) {
+    myKeys = keys;
+  }
+
+  static DefaultsSuffixIndex get(Class<?> lafClass, UIDefaults baseDefaults) {
+    DefaultsSuffixIndex index = ourIndices.get(lafClass);
+    if (index == null) {
+      index = build(baseDefaults);
+      ourIndices.put(lafClass, index);
+    }
+    return index;
+  }
+
+  private static DefaultsSuffixIndex build(UIDefaults defaults) {
+    final Map<String, List<Object>> keys = new HashMap<String, List<Object>>();
+    for (Object key : defaults.keySet().toArray()) {
+      if (key instanceof String) {
+        final String s = (String)key;
+        final int dot = s.lastIndexOf('.');
+        if (dot >= 0) {
+          final String suffix = s.substring(dot + 1);
+          List<Object> list = keys.get(suffix);
+          if (list == null) {
+            list = new ArrayList<Object>(2);
+            keys.put(suffix, list);
+          }
+          list.add(key);
+        }
+      }
+    }
+    final Map<String, Object[]> result = new HashMap<String, Object[]>(keys.size() * 4 / 3 + 1);
+    for (Map.Entry<String, List<Object>> entry : keys.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().toArray());
+    }
+    return new DefaultsSuffixIndex(result);
+  }
+
+  Object[] getKeys(String suffix) {
+    final Object[] keys = myKeys.get(suffix);
+    return keys == null ? EMPTY : keys;
+  }
+
+  /**
+   * Puts <code>value</code> under every key of <code>defaults</code> ending with <code>.suffix</code>.
+   *
+   * @return number of rewritten keys
+   */
+  int apply(UIDefaults defaults, String suffix, Object value) {
+    int count = 0;
+    for (Object key : getKeys(suffix)) {
+      if (defaults.containsKey(key)) {
+        defaults.put(key, value);
+        count++;
+      }
+    }
+    return count;
+  }
+}
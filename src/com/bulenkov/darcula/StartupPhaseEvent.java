@@ -0,0 +1,118 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flight Recorder event for one {@link DarculaStartupProfile} phase. The event type is built
+ * with <code>jdk.jfr.EventFactory</code> through reflection, so the sources still compile
+ * against runtimes without <code>jdk.jfr</code>, where {@link #isAvailable()} is
+ * <code>false</code>.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class StartupPhaseEvent {
+  private static final int PHASE = 0;
+  private static final int ALLOCATED_BYTES = 1;
+
+  private static Object ourFactory;
+  private static Method ourNewEvent;
+  private static Method ourBegin;
+  private static Method ourEnd;
+  private static Method ourShouldCommit;
+  private static Method ourCommit;
+  private static Method ourSet;
+
+  static {
+    try {
+      final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+      final Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+      final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+      final Class<?> event = Class.forName("jdk.jfr.Event");
+      final Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+      final Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+      final List<Object> eventAnnotations = Arrays.asList(
+        annotation.newInstance(annotationType("jdk.jfr.Name"), "com.bulenkov.darcula.StartupPhase"),
+        annotation.newInstance(annotationType("jdk.jfr.Label"), "Darcula Startup Phase"),
+        annotation.newInstance(annotationType("jdk.jfr.Category"), new String[]{"Darcula", "Look and Feel"}),
+        annotation.newInstance(annotationType("jdk.jfr.StackTrace"), Boolean.FALSE));
+      final List<Object> fields = Arrays.asList(
+        field.newInstance(String.class, "phase", Collections.singletonList(
+          annotation.newInstance(annotationType("jdk.jfr.Label"), "Phase"))),
+        field.newInstance(long.class, "allocatedBytes", Arrays.asList(
+          annotation.newInstance(annotationType("jdk.jfr.Label"), "Allocated"),
+          annotation.newInstance(annotationType("jdk.jfr.DataAmount"), "BYTES"))));
+
+      ourFactory = eventFactory.getMethod("create", List.class, List.class).invoke(null, eventAnnotations, fields);
+      ourNewEvent = eventFactory.getMethod("newEvent");
+      ourBegin = event.getMethod("begin");
+      ourEnd = event.getMethod("end");
+      ourShouldCommit = event.getMethod("shouldCommit");
+      ourCommit = event.getMethod("commit");
+      ourSet = event.getMethod("set", int.class, Object.class);
+    }
+    catch (Throwable e) {
+      ourFactory = null;
+    }
+  }
+
+  private StartupPhaseEvent() {
+  }
+
+  static boolean isAvailable() {
+    return ourFactory != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends Annotation> annotationType(String name) throws ClassNotFoundException {
+    return (Class<? extends Annotation>)Class.forName(name);
+  }
+
+  /**
+   * @return the started event, or <code>null</code> if it can't be created
+   */
+  static Object start() {
+    try {
+      final Object event = ourNewEvent.invoke(ourFactory);
+      ourBegin.invoke(event);
+      return event;
+    }
+    catch (Throwable e) {
+      return null;
+    }
+  }
+
+  static void commit(Object event, String phase, long allocatedBytes) {
+    try {
+      ourEnd.invoke(event);
+      if (Boolean.TRUE.equals(ourShouldCommit.invoke(event))) {
+        ourSet.invoke(event, PHASE, phase);
+        ourSet.invoke(event, ALLOCATED_BYTES, allocatedBytes);
+        ourCommit.invoke(event);
+      }
+    }
+    catch (Throwable e) {
+      DarculaLaf.log(e);
+    }
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaButtonCache;
+import com.bulenkov.darcula.DarculaPalette;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.GraphicsConfig;
 import com.bulenkov.iconloader.util.Gray;
@@ -44,16 +46,16 @@ public class DarculaButtonPainter implements Border, UIResource {
     if (c.hasFocus()) {
       DarculaUIUtil.paintFocusRing(g2d, offset, yOff, width - 2 * offset, height - 2 * yOff);
     } else {
-      final GraphicsConfig config = new GraphicsConfig(g);
-      g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-      g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
-      g2d.setPaint(new GradientPaint(width / 2, y + yOff + 1, Gray._80.withAlpha(90), width / 2, height - 2 * yOff, Gray._90.withAlpha(90)));
-      //g.drawRoundRect(x + offset + 1, y + yOff + 1, width - 2 * offset, height - 2*yOff, 5, 5);
-
-      ((Graphics2D)g).setPaint(Gray._100.withAlpha(180));
-      g.drawRoundRect(x + offset, y + yOff, width - 2 * offset, height - 2*yOff, square ? 3 : 5, square ? 3 : 5);
-
-      config.restore();
+      final Color color = DarculaPalette.toAlpha(Gray._100, 180);
+      final int arc = square ? 3 : 5;
+      if (!DarculaButtonCache.paintBorder(g2d, color, x + offset, y + yOff, width - 2 * offset, height - 2 * yOff, arc)) {
+        final GraphicsConfig config = new GraphicsConfig(g);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
+        g2d.setPaint(color);
+        g.drawRoundRect(x + offset, y + yOff, width - 2 * offset, height - 2 * yOff, arc, arc);
+        config.restore();
+      }
     }
   }
 
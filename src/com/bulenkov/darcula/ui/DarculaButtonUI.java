@@ -15,6 +15,8 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaButtonCache;
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.SystemInfo;
 import com.bulenkov.iconloader.util.GraphicsConfig;
@@ -111,21 +113,24 @@ public class DarculaButtonUI extends BasicButtonUI {
     if (c.isEnabled() && border != null && b.isContentAreaFilled()) {
       final Insets ins = border.getBorderInsets(c);
       final int yOff = (ins.top + ins.bottom) / 4;
-      if (!square) {
-        if (c instanceof JButton && ((JButton)c).isDefaultButton() || model.isSelected()) {
-          g2d.setPaint(new GradientPaint(0, 0, getSelectedButtonColor1(), 0, h, getSelectedButtonColor2()));
-        }
-        else {
-          g2d.setPaint(new GradientPaint(0, 0, getButtonColor1(), 0, h, getButtonColor2()));
-        }
-      }
       final int scaleFactor = DarculaUIUtil.getScaleFactor();
       final int x = (square ? 2 : 4) * scaleFactor;
       final int width = w - 2 * 4 * scaleFactor;
       final int height = h - 2 * yOff;
       final int arcWidth = (square ? 3 : 5) * scaleFactor;
       final int arcHeight = (square ? 3 : 5) * scaleFactor;
-      g2d.fillRoundRect(x, yOff, width, height, arcWidth, arcHeight);
+      if (square) {
+        g2d.fillRoundRect(x, yOff, width, height, arcWidth, arcHeight);
+      }
+      else {
+        final boolean selected = c instanceof JButton && ((JButton)c).isDefaultButton() || model.isSelected();
+        final Color color1 = selected ? getSelectedButtonColor1() : getButtonColor1();
+        final Color color2 = selected ? getSelectedButtonColor2() : getButtonColor2();
+        if (!DarculaButtonCache.paintBackground(g2d, color1, color2, x, yOff, width, height, arcWidth, h)) {
+          g2d.setPaint(new GradientPaint(0, 0, color1, 0, h, color2));
+          g2d.fillRoundRect(x, yOff, width, height, arcWidth, arcHeight);
+        }
+      }
     }
     config.restore();
 
@@ -167,7 +172,7 @@ public class DarculaButtonUI extends BasicButtonUI {
     final ButtonModel model = button.getModel();
     Color fg = button.getForeground();
     if (fg instanceof UIResource && button instanceof JButton && ((JButton)button).isDefaultButton()) {
-      final Color selectedFg = UIManager.getColor("Button.darcula.selectedButtonForeground");
+      final Color selectedFg = DarculaTheme.get().buttonSelectedForeground;
       if (selectedFg != null) {
         fg = selectedFg;
       }
@@ -183,11 +188,11 @@ public class DarculaButtonUI extends BasicButtonUI {
                                                 textRect.y + metrics.getAscent() + getTextShiftOffset());
     }
     else {
-      g2d.setColor(UIManager.getColor("Button.darcula.disabledText.shadow"));
+      g2d.setColor(DarculaTheme.get().buttonDisabledTextShadow);
       SwingUtilities2.drawStringUnderlineCharAt(c, g2d, text, -1,
                                                 textRect.x + getTextShiftOffset()+1,
                                                 textRect.y + metrics.getAscent() + getTextShiftOffset()+1);
-      g2d.setColor(UIManager.getColor("Button.disabledText"));
+      g2d.setColor(DarculaTheme.get().buttonDisabledText);
       SwingUtilities2.drawStringUnderlineCharAt(c, g2d, text, -1,
                                                 textRect.x + getTextShiftOffset(),
                                                 textRect.y + metrics.getAscent() + getTextShiftOffset());
@@ -207,18 +212,18 @@ public class DarculaButtonUI extends BasicButtonUI {
   }
 
   protected Color getButtonColor1() {
-    return UIManager.getColor("Button.darcula.color1");
+    return DarculaTheme.get().buttonColor1;
   }
 
   protected Color getButtonColor2() {
-    return UIManager.getColor("Button.darcula.color2");
+    return DarculaTheme.get().buttonColor2;
   }
 
   protected Color getSelectedButtonColor1() {
-    return UIManager.getColor("Button.darcula.selection.color1");
+    return DarculaTheme.get().buttonSelectionColor1;
   }
 
   protected Color getSelectedButtonColor2() {
-    return UIManager.getColor("Button.darcula.selection.color2");
+    return DarculaTheme.get().buttonSelectionColor2;
   }
 }
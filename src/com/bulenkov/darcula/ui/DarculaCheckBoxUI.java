@@ -15,10 +15,11 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaSpriteSheet;
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.EmptyIcon;
 import com.bulenkov.iconloader.util.GraphicsConfig;
-import com.bulenkov.iconloader.util.Gray;
 import com.bulenkov.iconloader.util.UIUtil;
 import sun.swing.SwingUtilities2;
 
@@ -39,7 +40,11 @@ import static com.bulenkov.darcula.ui.DarculaButtonUI.isIndeterminate;
  */
 public class DarculaCheckBoxUI extends MetalCheckBoxUI {
 
+  private static final int CELLS = 18;
+
   private float scale = 1f;
+  private final DarculaSpriteSheet.CellPainter myGlyphPainter =
+    (g, cell, background, width, height, extra) -> paintCheckBox(g, cell, background, width, height);
   private PropertyChangeListener sizeVariantListener = evt -> scale = DarculaUIUtil.getScale((JComponent) evt.getSource());
 
   @SuppressWarnings("MethodOverridesStaticMethodOfSuperclass")
@@ -64,7 +69,7 @@ public class DarculaCheckBoxUI extends MetalCheckBoxUI {
   }
 
   @Override
-  public synchronized void paint(Graphics g, JComponent c) {
+  public void paint(Graphics g, JComponent c) {
     Graphics2D g2d = (Graphics2D)g.create();
     g2d.scale(scale, scale);
 
@@ -108,55 +113,14 @@ public class DarculaCheckBoxUI extends MetalCheckBoxUI {
       final int y = iconRect.y + 3 * scaleFactor;
       final int w = iconRect.width - 6 * scaleFactor;
       final int h = iconRect.height - 6 * scaleFactor;
+      final int cell = getCell(b);
 
-      g2d.translate(x, y);
-      final Paint paint = new GradientPaint(w / 2, 0, b.getBackground().brighter(),
-                                                    w / 2, h, b.getBackground());
-      g2d.setPaint(paint);
-      g2d.fillRect(1, 1, w - 2, h - 2);
-
-      //setup AA for lines
-      final GraphicsConfig config = new GraphicsConfig(g2d);
-      g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-      g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
-
-      final boolean armed = b.getModel().isArmed();
-
-      if (c.hasFocus()) {
-        g2d.setPaint(new GradientPaint(w/2, 1, getFocusedBackgroundColor1(armed), w/2, h, getFocusedBackgroundColor2(armed)));
-        g2d.fillRoundRect(0, 0, w - 2, h - 2, 4 * scaleFactor, 4 * scaleFactor);
-
-        DarculaUIUtil.paintFocusRing(g2d, 1, 1, w - 2, h - 2);
-      } else {
-        g2d.setPaint(new GradientPaint(w / 2, 1, getBackgroundColor1(), w / 2, h, getBackgroundColor2()));
-        g2d.fillRoundRect(0, 0, w, h - 1 , 4 * scaleFactor, 4 * scaleFactor);
-
-        g2d.setPaint(new GradientPaint(w / 2, 1, getBorderColor1(b.isEnabled()), w / 2, h, getBorderColor2(b.isEnabled())));
-        g2d.drawRoundRect(0, (UIUtil.isUnderDarcula() ? 1 : 0), w, h - 1, 4 * scaleFactor, 4 * scaleFactor);
-
-        g2d.setPaint(getInactiveFillColor());
-        g2d.drawRoundRect(0, 0, w, h - 1, 4 * scaleFactor, 4 * scaleFactor);
-      }
-
-      if (isIndeterminate(c) && b.getModel().isSelected()) {
-        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        g2d.setStroke(new BasicStroke(1*2.0f*scaleFactor, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
-        g2d.setPaint(getShadowColor(b.isEnabled()));
-        g2d.drawLine(4 * scaleFactor, 8 * scaleFactor, w-4 * scaleFactor, 8 * scaleFactor);
-        g2d.setPaint(getCheckSignColor(b.isEnabled()));
-        g2d.drawLine(4 * scaleFactor, 6 * scaleFactor, w-4 * scaleFactor, 6 * scaleFactor);
-      } else if (b.getModel().isSelected()) {
-        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        g2d.setStroke(new BasicStroke(1 *2.0f*scaleFactor, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
-        g2d.setPaint(getShadowColor(b.isEnabled()));
-        g2d.drawLine(4 * scaleFactor, 7 * scaleFactor, 7 * scaleFactor, 11 * scaleFactor);
-        g2d.drawLine(7 * scaleFactor, 11 * scaleFactor, w, 2 * scaleFactor);
-        g2d.setPaint(getCheckSignColor(b.isEnabled()));
-        g2d.drawLine(4 * scaleFactor, 5 * scaleFactor, 7 * scaleFactor, 9 * scaleFactor);
-        g2d.drawLine(7 * scaleFactor, 9 * scaleFactor, w, 0);
+      if (!DarculaSpriteSheet.paint(g2d, getClass(), myGlyphPainter, CELLS, cell, b.getBackground(), w, h, 0,
+                                    getSpriteFlags(scaleFactor), x, y)) {
+        g2d.translate(x, y);
+        paintCheckBox(g2d, cell, b.getBackground(), w, h);
+        g2d.translate(-x, -y);
       }
-      g2d.translate(-x, -y);
-      config.restore();
     }
 
     //text
@@ -174,46 +138,114 @@ public class DarculaCheckBoxUI extends MetalCheckBoxUI {
     }
   }
 
+  /**
+   * State of the check box glyph: enabled, selection (none, selected, indeterminate) and
+   * focus (none, focused, focused and armed).
+   */
+  private static int getCell(AbstractButton b) {
+    final ButtonModel model = b.getModel();
+    final int selection = !model.isSelected() ? 0 : isIndeterminate(b) ? 2 : 1;
+    final int focus = !b.hasFocus() ? 0 : model.isArmed() ? 2 : 1;
+    return (b.isEnabled() ? 1 : 0) + 2 * selection + 6 * focus;
+  }
+
+  static int getSpriteFlags(int scaleFactor) {
+    return scaleFactor << 1 | (UIUtil.isUnderDarcula() ? 1 : 0);
+  }
+
+  protected void paintCheckBox(Graphics2D g2d, int cell, Color background, int w, int h) {
+    final int scaleFactor = DarculaUIUtil.getScaleFactor();
+    final boolean enabled = (cell & 1) != 0;
+    final int selection = cell / 2 % 3;
+    final int focus = cell / 6;
+    final boolean armed = focus == 2;
+
+    final Paint paint = new GradientPaint(w / 2, 0, background.brighter(),
+                                                  w / 2, h, background);
+    g2d.setPaint(paint);
+    g2d.fillRect(1, 1, w - 2, h - 2);
+
+    //setup AA for lines
+    final GraphicsConfig config = new GraphicsConfig(g2d);
+    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
+
+    if (focus != 0) {
+      g2d.setPaint(new GradientPaint(w/2, 1, getFocusedBackgroundColor1(armed), w/2, h, getFocusedBackgroundColor2(armed)));
+      g2d.fillRoundRect(0, 0, w - 2, h - 2, 4 * scaleFactor, 4 * scaleFactor);
+
+      DarculaUIUtil.paintFocusRing(g2d, 1, 1, w - 2, h - 2);
+    } else {
+      g2d.setPaint(new GradientPaint(w / 2, 1, getBackgroundColor1(), w / 2, h, getBackgroundColor2()));
+      g2d.fillRoundRect(0, 0, w, h - 1 , 4 * scaleFactor, 4 * scaleFactor);
+
+      g2d.setPaint(new GradientPaint(w / 2, 1, getBorderColor1(enabled), w / 2, h, getBorderColor2(enabled)));
+      g2d.drawRoundRect(0, (UIUtil.isUnderDarcula() ? 1 : 0), w, h - 1, 4 * scaleFactor, 4 * scaleFactor);
+
+      g2d.setPaint(getInactiveFillColor());
+      g2d.drawRoundRect(0, 0, w, h - 1, 4 * scaleFactor, 4 * scaleFactor);
+    }
+
+    if (selection == 2) {
+      g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+      g2d.setStroke(new BasicStroke(1*2.0f*scaleFactor, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
+      g2d.setPaint(getShadowColor(enabled));
+      g2d.drawLine(4 * scaleFactor, 8 * scaleFactor, w-4 * scaleFactor, 8 * scaleFactor);
+      g2d.setPaint(getCheckSignColor(enabled));
+      g2d.drawLine(4 * scaleFactor, 6 * scaleFactor, w-4 * scaleFactor, 6 * scaleFactor);
+    } else if (selection == 1) {
+      g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+      g2d.setStroke(new BasicStroke(1 *2.0f*scaleFactor, BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
+      g2d.setPaint(getShadowColor(enabled));
+      g2d.drawLine(4 * scaleFactor, 7 * scaleFactor, 7 * scaleFactor, 11 * scaleFactor);
+      g2d.drawLine(7 * scaleFactor, 11 * scaleFactor, w, 2 * scaleFactor);
+      g2d.setPaint(getCheckSignColor(enabled));
+      g2d.drawLine(4 * scaleFactor, 5 * scaleFactor, 7 * scaleFactor, 9 * scaleFactor);
+      g2d.drawLine(7 * scaleFactor, 9 * scaleFactor, w, 0);
+    }
+    config.restore();
+  }
+
   protected Color getInactiveFillColor() {
-    return getColor("inactiveFillColor", Gray._40.withAlpha(180));
+    return DarculaTheme.get().checkBoxInactiveFillColor;
   }
 
   protected Color getBorderColor1(boolean enabled) {
-    return enabled ? getColor("borderColor1", Gray._120.withAlpha(0x5a))
-                   : getColor("disabledBorderColor1", Gray._120.withAlpha(90));
+    final DarculaTheme theme = DarculaTheme.get();
+    return enabled ? theme.checkBoxBorderColor1 : theme.checkBoxDisabledBorderColor1;
   }
 
   protected Color getBorderColor2(boolean enabled) {
-    return enabled ? getColor("borderColor2", Gray._105.withAlpha(90))
-                   : getColor("disabledBorderColor2", Gray._105.withAlpha(90));
+    final DarculaTheme theme = DarculaTheme.get();
+    return enabled ? theme.checkBoxBorderColor2 : theme.checkBoxDisabledBorderColor2;
   }
 
   protected Color getBackgroundColor1() {
-    return getColor("backgroundColor1", Gray._110);
+    return DarculaTheme.get().checkBoxBackgroundColor1;
   }
 
   protected Color getBackgroundColor2() {
-    return getColor("backgroundColor2", Gray._95);
+    return DarculaTheme.get().checkBoxBackgroundColor2;
   }
 
   protected Color getCheckSignColor(boolean enabled) {
-    return enabled ? getColor("checkSignColor", Gray._170)
-                   : getColor("checkSignColorDisabled", Gray._120);
+    final DarculaTheme theme = DarculaTheme.get();
+    return enabled ? theme.checkBoxCheckSignColor : theme.checkBoxCheckSignColorDisabled;
   }
 
   protected Color getShadowColor(boolean enabled) {
-    return enabled ? getColor("shadowColor", Gray._30)
-                   : getColor("shadowColorDisabled", Gray._60);
+    final DarculaTheme theme = DarculaTheme.get();
+    return enabled ? theme.checkBoxShadowColor : theme.checkBoxShadowColorDisabled;
   }
 
   protected Color getFocusedBackgroundColor1(boolean armed) {
-    return armed ? getColor("focusedArmed.backgroundColor1", Gray._100)
-                 : getColor("focused.backgroundColor1", Gray._120);
+    final DarculaTheme theme = DarculaTheme.get();
+    return armed ? theme.checkBoxFocusedArmedBackgroundColor1 : theme.checkBoxFocusedBackgroundColor1;
   }
 
   protected Color getFocusedBackgroundColor2(boolean armed) {
-    return armed ? getColor("focusedArmed.backgroundColor2", Gray._55)
-                 : getColor("focused.backgroundColor2", Gray._75);
+    final DarculaTheme theme = DarculaTheme.get();
+    return armed ? theme.checkBoxFocusedArmedBackgroundColor2 : theme.checkBoxFocusedBackgroundColor2;
   }
 
   protected static Color getColor(String shortPropertyName, Color defaultValue) {
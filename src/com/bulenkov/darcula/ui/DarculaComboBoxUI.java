@@ -15,6 +15,7 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.DoubleColor;
 import com.bulenkov.iconloader.util.GraphicsConfig;
@@ -115,8 +116,8 @@ public class DarculaComboBoxUI extends BasicComboBoxUI implements Border {
   }
 
   protected Color getArrowButtonFillColor(Color defaultColor) {
-    final Color color = myComboBox.hasFocus() ? UIManager.getColor("ComboBox.darcula.arrowFocusedFillColor")
-                        : UIManager.getColor("ComboBox.darcula.arrowFillColor");
+    final Color color = myComboBox.hasFocus() ? DarculaTheme.get().comboArrowFocusedFillColor
+                        : DarculaTheme.get().comboArrowFillColor;
     return color == null ? defaultColor : comboBox != null && !comboBox.isEnabled() ? UIUtil.getControlColor() : color;
   }
 
@@ -246,16 +247,15 @@ public class DarculaComboBoxUI extends BasicComboBoxUI implements Border {
         }
       });
       comboBoxEditor.getEditorComponent().addFocusListener(new FocusAdapter() {
+        // the insets don't depend on focus, so only the ring needs to be repainted
         @Override
         public void focusGained(FocusEvent e) {
-          comboBox.revalidate();
-          comboBox.repaint();
+          DarculaUIUtil.repaintFocusRing(comboBox, getFocusRingInsets(comboBox));
         }
 
         @Override
         public void focusLost(FocusEvent e) {
-          comboBox.revalidate();
-          comboBox.repaint();
+          DarculaUIUtil.repaintFocusRing(comboBox, getFocusRingInsets(comboBox));
         }
       });
     }
@@ -303,7 +303,8 @@ public class DarculaComboBoxUI extends BasicComboBoxUI implements Border {
     paintCurrentValue(g, r, false);
 
     if (hasFocus) {
-      DarculaUIUtil.paintFocusRing(g, 2, 2, width - 4, height - 5);
+      final Rectangle ring = getFocusRingBounds(width, height);
+      DarculaUIUtil.paintFocusRing(g, ring.x, ring.y, ring.width, ring.height);
     }
     else {
       g.setColor(borderColor);
@@ -312,6 +313,17 @@ public class DarculaComboBoxUI extends BasicComboBoxUI implements Border {
     config.restore();
   }
 
+  /**
+   * @return widths of the bands along the edges of <code>c</code> that change with focus
+   */
+  public Insets getFocusRingInsets(Component c) {
+    return DarculaUIUtil.getFocusRingInsets(c, getFocusRingBounds(c.getWidth(), c.getHeight()), 0);
+  }
+
+  private static Rectangle getFocusRingBounds(int width, int height) {
+    return new Rectangle(2, 2, width - 4, height - 5);
+  }
+
   private void checkFocus() {
     hasFocus = hasFocus(comboBox);
     if (hasFocus) return;
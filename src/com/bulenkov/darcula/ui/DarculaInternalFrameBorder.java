@@ -16,6 +16,7 @@
 
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
 import javax.swing.*;
 import javax.swing.border.Border;
 import javax.swing.plaf.InsetsUIResource;
@@ -28,7 +29,7 @@ import java.awt.*;
 public class DarculaInternalFrameBorder implements Border, UIResource {
     @Override
     public void paintBorder(Component c, Graphics g, int x, int y, int w, int h) {
-      g.setColor(UIManager.getColor("InternalFrame.darcula.borderColor"));
+      g.setColor(DarculaTheme.get().internalFrameBorderColor);
       g.drawRect(x, y, w-1, h-1);
     }
 
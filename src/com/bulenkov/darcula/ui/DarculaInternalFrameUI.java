@@ -15,6 +15,7 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.iconloader.util.GraphicsConfig;
 import com.bulenkov.iconloader.util.GraphicsUtil;
 
@@ -78,7 +79,7 @@ public class DarculaInternalFrameUI extends BasicInternalFrameUI {
                     public void mouseExited(MouseEvent e) {
                         Icon icon = ((JButton) e.getComponent()).getIcon();
                         if (icon instanceof FrameIcon) {
-                            ((FrameIcon) icon).setColor(UIManager.getColor("InternalFrameTitlePane.darcula.buttonColor"));
+                            ((FrameIcon) icon).setColor(DarculaTheme.get().titlePaneButtonColor);
                             e.getComponent().repaint();
                         }
                     }
@@ -102,14 +103,11 @@ public class DarculaInternalFrameUI extends BasicInternalFrameUI {
                 int w = getWidth();
                 int h = getHeight();
 
-                Color top = UIManager.getColor("InternalFrameTitlePane.darcula.borderColorTop");
-                Color left = UIManager.getColor("InternalFrameTitlePane.darcula.borderColorLeft");
-                Color bottom = UIManager.getColor("InternalFrameTitlePane.darcula.borderColorBottom");
-                if (frame.isSelected()) {
-                    top = UIManager.getColor("InternalFrameTitlePane.darcula.selected.borderColorTop");
-                    left = UIManager.getColor("InternalFrameTitlePane.darcula.selected.borderColorLeft");
-                    bottom = UIManager.getColor("InternalFrameTitlePane.darcula.selected.borderColorBottom");
-                }
+                final DarculaTheme theme = DarculaTheme.get();
+                final boolean selected = frame.isSelected();
+                final Color top = selected ? theme.titlePaneSelectedBorderColorTop : theme.titlePaneBorderColorTop;
+                final Color left = selected ? theme.titlePaneSelectedBorderColorLeft : theme.titlePaneBorderColorLeft;
+                final Color bottom = selected ? theme.titlePaneSelectedBorderColorBottom : theme.titlePaneBorderColorBottom;
 
                 g.setColor(top);
                 g.drawLine(2, 0, w, 0);
@@ -15,6 +15,7 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 
 import javax.swing.*;
@@ -31,10 +32,11 @@ public class DarculaMenuBarBorder implements Border, UIResource {
   public void paintBorder(Component c, Graphics g, int x, int y, int w, int h) {
     g.translate(x, y);
     w--;h--;
-    g.setColor(UIManager.getColor("MenuBar.darcula.borderColor"));
+    final DarculaTheme theme = DarculaTheme.get();
+    g.setColor(theme.menuBarBorderColor);
     g.drawLine(0, h, w, h);
     h--;
-    g.setColor(UIManager.getColor("MenuBar.darcula.borderShadowColor"));
+    g.setColor(theme.menuBarBorderShadowColor);
     g.drawLine(0, h, w, h);
     g.translate(-x, -y);
   }
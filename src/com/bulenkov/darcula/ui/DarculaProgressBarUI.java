@@ -15,6 +15,7 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.util.Comparing;
 import com.bulenkov.iconloader.util.DoubleColor;
 import com.bulenkov.iconloader.util.GraphicsUtil;
 import com.bulenkov.iconloader.util.Gray;
@@ -22,16 +23,21 @@ import sun.swing.SwingUtilities2;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.plaf.BorderUIResource;
 import javax.swing.plaf.ComponentUI;
 import javax.swing.plaf.basic.BasicProgressBarUI;
 import java.awt.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 
 /**
  * @author Konstantin Bulenkov
  */
 public class DarculaProgressBarUI extends BasicProgressBarUI {
+  private static final Color INDETERMINATE_BACKGROUND = new DoubleColor(Gray._240, Gray._128);
+  private static final Color INDETERMINATE_STRIPE = new DoubleColor(Gray._165, Gray._88);
 
   @SuppressWarnings({"MethodOverridesStaticMethodOfSuperclass", "UnusedDeclaration"})
   public static ComponentUI createUI(JComponent c) {
@@ -40,6 +46,99 @@ public class DarculaProgressBarUI extends BasicProgressBarUI {
   }
 
   protected volatile int offset = 0;
+
+  private int myRepaintInterval;
+
+  private BufferedImage myStripeTile;
+  private int myStripeTileScale;
+  private int myStripeTileHeight;
+  private int myStripeTileBackground;
+  private int myStripeTileStripe;
+
+  private final ChangeListener myChangeListener = new ChangeListener() {
+    @Override
+    public void stateChanged(ChangeEvent e) {
+      repaintChange();
+    }
+  };
+  private volatile int myPaintedAmount = -1;
+  private volatile int myPaintedWidth = -1;
+  private volatile int myRequestedAmount = -1;
+  private volatile String myPaintedString;
+  private volatile int myCachedPercent = -1;
+
+  private Shape myInnerMask;
+  private Shape myOuterMask;
+  private int myMaskWidth = -1;
+  private int myMaskHeight = -1;
+
+  @Override
+  protected void installDefaults() {
+    super.installDefaults();
+    myRepaintInterval = UIManager.getInt("ProgressBar.repaintInterval");
+    if (myRepaintInterval <= 0) {
+      myRepaintInterval = 50;
+    }
+  }
+
+  @Override
+  protected void installListeners() {
+    super.installListeners();
+    // replace the percent based repaint of the basic UI, uninstallListeners() removes changeListener
+    progressBar.removeChangeListener(changeListener);
+    changeListener = myChangeListener;
+    progressBar.addChangeListener(changeListener);
+  }
+
+  /**
+   * Called for every model change, possibly on a background thread. Skips changes that don't move
+   * the filled part by a pixel or change the string, and otherwise repaints only the part of the
+   * bar between the old and the new fill end.
+   */
+  private void repaintChange() {
+    final JProgressBar bar = progressBar;
+    if (bar == null) {
+      return;
+    }
+    final int paintedAmount = myPaintedAmount;
+    if (paintedAmount < 0 || bar.isIndeterminate()) {
+      // vertical, right-to-left and indeterminate bars are painted as a whole
+      repaintPercentChange(bar);
+      return;
+    }
+    final int width = bar.getWidth();
+    if (width != myPaintedWidth) {
+      bar.repaint();
+      return;
+    }
+    if (bar.isStringPainted() && !Comparing.equal(bar.getString(), myPaintedString)) {
+      bar.repaint();
+      return;
+    }
+    final Insets b = bar.getInsets();
+    final int barRectWidth = width - (b.right + b.left);
+    final int amountFull = getAmountFull(b, barRectWidth, bar.getHeight() - (b.top + b.bottom));
+    if (amountFull != paintedAmount && amountFull != myRequestedAmount) {
+      myRequestedAmount = amountFull;
+      // the rounded end of the fill reaches a few pixels back from its right edge
+      final int x = Math.min(amountFull, paintedAmount) - 8;
+      bar.repaint(x, 0, Math.max(amountFull, paintedAmount) + 1 - x, bar.getHeight());
+    }
+  }
+
+  /**
+   * Repaints the bar when the percentage changes, like the change listener of the basic UI.
+   */
+  private void repaintPercentChange(JProgressBar bar) {
+    final BoundedRangeModel model = bar.getModel();
+    final int range = model.getMaximum() - model.getMinimum();
+    final int percent = range > 0 ? (int)((100 * (long)model.getValue()) / range) : 0;
+    if (percent != myCachedPercent) {
+      myCachedPercent = percent;
+      bar.repaint();
+    }
+  }
+
   @Override
   protected void paintIndeterminate(Graphics g, JComponent c) {
     if (!(g instanceof Graphics2D)) {
@@ -54,36 +153,34 @@ public class DarculaProgressBarUI extends BasicProgressBarUI {
       return;
     }
     //boxRect = getBox(boxRect);
-    g.setColor(new DoubleColor(Gray._240, Gray._128));
+    final Graphics2D g2 = (Graphics2D)g;
     int w = c.getWidth();
     int h = c.getPreferredSize().height;
-    g.fillRect(0, (c.getHeight() - h)/2, w, h);
-    g.setColor(new DoubleColor(Gray._165, Gray._88));
+    final int period = getPeriodLength();
+    // the stripes move one pixel per repaint interval, however often the bar is actually painted
+    offset = (int)(System.nanoTime() / 1000000L / myRepaintInterval % period);
+
     GraphicsUtil.setupAAPainting(g);
-    Path2D.Double path = new Path2D.Double();
-    int ww = getPeriodLength() / 2;
     g.translate(0, (c.getHeight() - h) / 2);
-    path.moveTo(0, 0);
-    path.lineTo(ww, 0);
-    path.lineTo(ww - h / 2, h);
-    path.lineTo(-h / 2, h);
-    path.lineTo(0, 0);
-    path.closePath();
-    int x = -offset;
-    while (x < Math.max(c.getWidth(), c.getHeight())) {
-      g.translate(x, 0);
-      ((Graphics2D)g).fill(path);
-      g.translate(-x, 0);
-      x+= getPeriodLength();
-    }
-    offset = (offset + 1) % getPeriodLength();
-    Area area = new Area(new Rectangle2D.Double(0, 0, w, h));
-    area.subtract(new Area(new RoundRectangle2D.Double(1,1,w-2, h-2, 8,8)));
-    ((Graphics2D)g).setPaint(Gray._128);
-    ((Graphics2D)g).fill(area);
-    area.subtract(new Area(new RoundRectangle2D.Double(0, 0, w, h, 9, 9)));
-    ((Graphics2D)g).setPaint(c.getParent().getBackground());
-    ((Graphics2D)g).fill(area);
+    final Paint oldPaint = g2.getPaint();
+    g2.setPaint(new TexturePaint(getStripeTile(g2, h), new Rectangle(-offset, 0, period, h)));
+    g.fillRect(0, 0, w, h);
+    g2.setPaint(oldPaint);
+
+    if (w != myMaskWidth || h != myMaskHeight) {
+      Area area = new Area(new Rectangle2D.Double(0, 0, w, h));
+      area.subtract(new Area(new RoundRectangle2D.Double(1,1,w-2, h-2, 8,8)));
+      myInnerMask = area;
+      area = new Area(area);
+      area.subtract(new Area(new RoundRectangle2D.Double(0, 0, w, h, 9, 9)));
+      myOuterMask = area;
+      myMaskWidth = w;
+      myMaskHeight = h;
+    }
+    g2.setPaint(Gray._128);
+    g2.fill(myInnerMask);
+    g2.setPaint(c.getParent().getBackground());
+    g2.fill(myOuterMask);
     g.drawRoundRect(1, 1, w - 3, h - 3, 8, 8);
     g.translate(0, -(c.getHeight() - h) / 2);
 
@@ -98,6 +195,53 @@ public class DarculaProgressBarUI extends BasicProgressBarUI {
     }
   }
 
+  /**
+   * One period of the background with a stripe, rendered at the device scale of <code>g</code>.
+   */
+  private BufferedImage getStripeTile(Graphics2D g, int h) {
+    final int scale = Math.max(1, (int)Math.ceil(Math.abs(g.getTransform().getScaleX())));
+    final int background = INDETERMINATE_BACKGROUND.getRGB();
+    final int stripe = INDETERMINATE_STRIPE.getRGB();
+    if (myStripeTile != null && myStripeTileScale == scale && myStripeTileHeight == h
+        && myStripeTileBackground == background && myStripeTileStripe == stripe) {
+      return myStripeTile;
+    }
+
+    final int period = getPeriodLength();
+    final BufferedImage tile = new BufferedImage(period * scale, h * scale, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D tg = tile.createGraphics();
+    try {
+      tg.scale(scale, scale);
+      tg.setColor(INDETERMINATE_BACKGROUND);
+      tg.fillRect(0, 0, period, h);
+      tg.setColor(INDETERMINATE_STRIPE);
+      GraphicsUtil.setupAAPainting(tg);
+      Path2D.Double path = new Path2D.Double();
+      int ww = period / 2;
+      path.moveTo(0, 0);
+      path.lineTo(ww, 0);
+      path.lineTo(ww - h / 2, h);
+      path.lineTo(-h / 2, h);
+      path.lineTo(0, 0);
+      path.closePath();
+      // the stripe is slanted, so neighbouring periods reach into the tile
+      for (int x = -period; x < period + h; x += period) {
+        tg.translate(x, 0);
+        tg.fill(path);
+        tg.translate(-x, 0);
+      }
+    }
+    finally {
+      tg.dispose();
+    }
+    myStripeTile = tile;
+    myStripeTileScale = scale;
+    myStripeTileHeight = h;
+    myStripeTileBackground = background;
+    myStripeTileStripe = stripe;
+    return tile;
+  }
+
   @Override
   protected void paintDeterminate(Graphics g, JComponent c) {
     if (!(g instanceof Graphics2D)) {
@@ -105,6 +249,7 @@ public class DarculaProgressBarUI extends BasicProgressBarUI {
     }
 
     if (progressBar.getOrientation() != SwingConstants.HORIZONTAL || !c.getComponentOrientation().isLeftToRight()) {
+      myPaintedAmount = -1;
       super.paintDeterminate(g, c);
       return;
     }
@@ -116,10 +261,15 @@ public class DarculaProgressBarUI extends BasicProgressBarUI {
     int barRectHeight = h - (b.top + b.bottom);
 
     if (barRectWidth <= 0 || barRectHeight <= 0) {
+      myPaintedAmount = -1;
       return;
     }
 
     int amountFull = getAmountFull(b, barRectWidth, barRectHeight);
+    myPaintedString = progressBar.isStringPainted() ? progressBar.getString() : null;
+    myPaintedWidth = w;
+    myPaintedAmount = amountFull;
+    myRequestedAmount = amountFull;
 
     g.setColor(c.getParent().getBackground());
     Graphics2D g2 = (Graphics2D)g;
@@ -16,6 +16,7 @@
 
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.ColorUtil;
 import com.bulenkov.iconloader.util.EmptyIcon;
@@ -80,9 +81,10 @@ public class DarculaRadioButtonMenuItemUI extends DarculaMenuItemUIBase {
 
     if (lh.getMenuItem().isSelected()) {
       final boolean enabled = lh.getMenuItem().isEnabled();
-      g.setColor(UIManager.getColor(enabled ? "RadioButton.darcula.selectionEnabledShadowColor" : "RadioButton.darcula.selectionDisabledShadowColor"));
+      final DarculaTheme theme = DarculaTheme.get();
+      g.setColor(enabled ? theme.radioSelectionEnabledShadowColor : theme.radioSelectionDisabledShadowColor);
       g.fillOval((w - rad)/2 , h/2 - rad/2 + 1, rad, rad);
-      g.setColor(UIManager.getColor(enabled ? "RadioButton.darcula.selectionEnabledColor" : "RadioButton.darcula.selectionDisabledColor"));
+      g.setColor(enabled ? theme.radioSelectionEnabledColor : theme.radioSelectionDisabledColor);
       g.fillOval((w - rad)/2 , h/2 - rad/2, rad, rad);
     }
     config.restore();
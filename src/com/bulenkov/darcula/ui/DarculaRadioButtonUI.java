@@ -15,6 +15,8 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaSpriteSheet;
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.*;
 import sun.swing.SwingUtilities2;
@@ -35,7 +37,10 @@ import static com.bulenkov.darcula.DarculaUIUtil.getScale;
  */
 public class DarculaRadioButtonUI extends MetalRadioButtonUI {
 
+  private static final int CELLS = 8;
+
   private float scale = 1f;
+  private final DarculaSpriteSheet.CellPainter myGlyphPainter = this::paintRadioButton;
   private PropertyChangeListener sizeVariantListener = evt -> scale = DarculaUIUtil.getScale((JComponent) evt.getSource());
 
   @SuppressWarnings("MethodOverridesStaticMethodOfSuperclass")
@@ -57,7 +62,7 @@ public class DarculaRadioButtonUI extends MetalRadioButtonUI {
   }
 
   @Override
-  public synchronized void paint(Graphics g, JComponent c) {
+  public void paint(Graphics g, JComponent c) {
     Graphics2D g2d = (Graphics2D)g.create();
     g2d.scale(scale, scale);
 
@@ -102,13 +107,49 @@ public class DarculaRadioButtonUI extends MetalRadioButtonUI {
     final int w = iconRect.width - (rad + 5 * scaleFactor) / 2;
     final int h = iconRect.height - (rad + 5 * scaleFactor) / 2;
 
-    g2d.translate(x, y);
+    final int cell = (b.isEnabled() ? 1 : 0) + (b.isSelected() ? 2 : 0) + (b.hasFocus() ? 4 : 0);
+    final int flags = DarculaCheckBoxUI.getSpriteFlags(scaleFactor) << 1 | (UIUtil.isRetina() ? 1 : 0);
+    if (!DarculaSpriteSheet.paint(g2d, getClass(), myGlyphPainter, CELLS, cell, c.getBackground(), w, h, c.getHeight(),
+                                  flags, x, y)) {
+      g2d.translate(x, y);
+      paintRadioButton(g2d, cell, c.getBackground(), w, h, c.getHeight());
+      g2d.translate(-x, -y);
+    }
+
+    // Draw the Text
+    if(text != null) {
+      View v = (View) c.getClientProperty(BasicHTML.propertyKey);
+      if (v != null) {
+        v.paint(g2d, textRect);
+      } else {
+        int mnemIndex = b.getDisplayedMnemonicIndex();
+        if(model.isEnabled()) {
+          // *** paint the text normally
+          g2d.setColor(b.getForeground());
+        } else {
+          // *** paint the text disabled
+          g2d.setColor(getDisabledTextColor());
+        }
+        SwingUtilities2.drawStringUnderlineCharAt(c, g2d, text,
+                                                  mnemIndex, textRect.x, textRect.y + fm.getAscent());
+      }
+    }
+  }
+
+  /**
+   * Paints the glyph with its origin at <code>(0, 0)</code>. Bits of <code>cell</code> are
+   * enabled, selected and focused.
+   */
+  protected void paintRadioButton(Graphics2D g2d, int cell, Color background, int w, int h, int gradientHeight) {
+    final int rad = 5 * DarculaUIUtil.getScaleFactor();
+    final boolean enabled = (cell & 1) != 0;
+    final boolean selected = (cell & 2) != 0;
+    final boolean focus = (cell & 4) != 0;
 
     //setup AA for lines
     final GraphicsConfig config = GraphicsUtil.setupAAPainting(g2d);
-    final boolean focus = b.hasFocus();
-    g2d.setPaint(new GradientPaint(0, 0, ColorUtil.shift(c.getBackground(), 1.5),
-        0, c.getHeight(), ColorUtil.shift(c.getBackground(), 1.2)));
+    g2d.setPaint(new GradientPaint(0, 0, ColorUtil.shift(background, 1.5),
+        0, gradientHeight, ColorUtil.shift(background, 1.2)));
     if (focus) {
       g2d.fillOval(0, 1, w, h);
     } else {
@@ -129,39 +170,19 @@ public class DarculaRadioButtonUI extends MetalRadioButtonUI {
         g2d.setPaint(Gray._40.withAlpha(200));
         g2d.drawOval(0, 1, w - 1, h - 1);
       } else {
-        g2d.setPaint(b.isEnabled() ? Gray._30 : Gray._130);
+        g2d.setPaint(enabled ? Gray._30 : Gray._130);
         g2d.drawOval(0, 1, w - 1, h - 1);
       }
     }
 
-    if (b.isSelected()) {
-      final boolean enabled = b.isEnabled();
-      g2d.setColor(UIManager.getColor(enabled ? "RadioButton.darcula.selectionEnabledShadowColor" : "RadioButton.darcula.selectionDisabledShadowColor"));// ? Gray._30 : Gray._60);
+    if (selected) {
+      final DarculaTheme theme = DarculaTheme.get();
+      g2d.setColor(enabled ? theme.radioSelectionEnabledShadowColor : theme.radioSelectionDisabledShadowColor);// ? Gray._30 : Gray._60);
       g2d.fillOval(w/2 - rad/2, h/2 - rad/2 + 1, rad, rad);
-      g2d.setColor(UIManager.getColor(enabled ? "RadioButton.darcula.selectionEnabledColor" : "RadioButton.darcula.selectionDisabledColor")); //Gray._170 : Gray._120);
+      g2d.setColor(enabled ? theme.radioSelectionEnabledColor : theme.radioSelectionDisabledColor); //Gray._170 : Gray._120);
       g2d.fillOval(w/2 - rad/2, h/2 - rad/2, rad, rad);
     }
     config.restore();
-    g2d.translate(-x, -y);
-
-    // Draw the Text
-    if(text != null) {
-      View v = (View) c.getClientProperty(BasicHTML.propertyKey);
-      if (v != null) {
-        v.paint(g2d, textRect);
-      } else {
-        int mnemIndex = b.getDisplayedMnemonicIndex();
-        if(model.isEnabled()) {
-          // *** paint the text normally
-          g2d.setColor(b.getForeground());
-        } else {
-          // *** paint the text disabled
-          g2d.setColor(getDisabledTextColor());
-        }
-        SwingUtilities2.drawStringUnderlineCharAt(c, g2d, text,
-                                                  mnemIndex, textRect.x, textRect.y + fm.getAscent());
-      }
-    }
   }
 
   @Override
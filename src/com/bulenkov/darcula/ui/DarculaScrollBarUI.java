@@ -15,6 +15,8 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaPalette;
+import com.bulenkov.darcula.DarculaThumbCache;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.darcula.util.Animator;
 import com.bulenkov.iconloader.util.DoubleColor;
@@ -38,24 +40,28 @@ public class DarculaScrollBarUI extends BasicScrollBarUI {
     return new DarculaScrollBarUI();
   }
 
+  private static final DoubleColor GRADIENT_LIGHT = new DoubleColor(Gray._251, Gray._95);
+  private static final DoubleColor GRADIENT_DARK = new DoubleColor(Gray._215, Gray._80);
+  private static final DoubleColor GRADIENT_THUMB_BORDER = new DoubleColor(Gray._201, Gray._85);
+
   public static DoubleColor getGradientLightColor() {
-    return new DoubleColor(Gray._251, Gray._95);
+    return GRADIENT_LIGHT;
   }
 
   public static DoubleColor getGradientDarkColor() {
-    return new DoubleColor(Gray._215, Gray._80);
+    return GRADIENT_DARK;
   }
 
   private static DoubleColor getGradientThumbBorderColor() {
-    return new DoubleColor(Gray._201, Gray._85);
+    return GRADIENT_THUMB_BORDER;
   }
 
   public static DoubleColor getTrackBackground() {
-    return new DoubleColor(Gray._245, UIUtil.getListBackground());
+    return DarculaPalette.doubleColor(Gray._245, UIUtil.getListBackground());
   }
 
   public static DoubleColor getTrackBorderColor() {
-    return new DoubleColor(Gray._230, UIUtil.getListBackground());
+    return DarculaPalette.doubleColor(Gray._230, UIUtil.getListBackground());
   }
 
   private static final BasicStroke BORDER_STROKE = new BasicStroke();
@@ -185,12 +191,14 @@ public class DarculaScrollBarUI extends BasicScrollBarUI {
     return new Animator("Adjustment fadeout", FRAMES_COUNT, FRAMES_COUNT * 50, false) {
       @Override
       public void paintNow(int frame, int totalFrames, int cycle) {
+        final int oldShift = myAnimationColorShift;
         myAnimationColorShift = getAnimationColorShift();
         if (frame > DELAY_FRAMES) {
           myAnimationColorShift *= 1 - ((double)(frame - DELAY_FRAMES)) / ((double)(totalFrames - DELAY_FRAMES));
         }
 
-        if (scrollbar != null) {
+        // delay frames keep the color, there is nothing to repaint
+        if (scrollbar != null && myAnimationColorShift != oldShift) {
           scrollbar.repaint(((DarculaScrollBarUI)scrollbar.getUI()).getThumbBounds());
         }
       }
@@ -284,24 +292,28 @@ public class DarculaScrollBarUI extends BasicScrollBarUI {
       w -= 1;
     }
 
-    final Paint paint;
     final Color start = adjustColor(getGradientLightColor());
     final Color end = adjustColor(getGradientDarkColor());
-
-    if (vertical) {
-      paint = new GradientPaint(1, 0, start, w + 1, 0, end);
-    }
-    else {
-      paint = new GradientPaint(0, 1, start, 0, h + 1, end);
-    }
-
-    g.setPaint(paint);
-    g.fillRect(hGap + 1, vGap + 1, w - 1, h - 1);
+    final Color border = getGradientThumbBorderColor();
+    final int arc = 3 * DarculaUIUtil.getScaleFactor();
 
     final Stroke stroke = g.getStroke();
     g.setStroke(BORDER_STROKE);
-    g.setColor(getGradientThumbBorderColor());
-    g.drawRoundRect(hGap, vGap, w, h, 3 * DarculaUIUtil.getScaleFactor(), 3 * DarculaUIUtil.getScaleFactor());
+    if (!DarculaThumbCache.paint(g, vertical, start, end, border, hGap, vGap, w, h, arc)) {
+      final Paint paint;
+      if (vertical) {
+        paint = new GradientPaint(1, 0, start, w + 1, 0, end);
+      }
+      else {
+        paint = new GradientPaint(0, 1, start, 0, h + 1, end);
+      }
+
+      g.setPaint(paint);
+      g.fillRect(hGap + 1, vGap + 1, w - 1, h - 1);
+
+      g.setColor(border);
+      g.drawRoundRect(hGap, vGap, w, h, arc, arc);
+    }
     g.setStroke(stroke);
   }
 
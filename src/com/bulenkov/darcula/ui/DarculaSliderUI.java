@@ -16,6 +16,8 @@
 
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
+import com.bulenkov.darcula.util.FrameClock;
 import com.bulenkov.iconloader.util.GraphicsConfig;
 import com.bulenkov.iconloader.util.GraphicsUtil;
 import com.intellij.util.ui.JBDimension;
@@ -23,18 +25,35 @@ import com.intellij.util.ui.JBUI;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.plaf.ComponentUI;
 import javax.swing.plaf.basic.BasicSliderUI;
 import java.awt.*;
-import java.awt.geom.Area;
+import java.awt.event.MouseEvent;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 
 /**
  * @author Konstantin Bulenkov
  */
 public class DarculaSliderUI extends BasicSliderUI {
+  /**
+   * Client property of <code>JSlider</code>. When <code>Boolean.TRUE</code>, value changes made by
+   * dragging the thumb are delivered at most once per display frame, and the last one on release.
+   */
+  public static final String COALESCE_CHANGES = "Slider.coalesceChanges";
+
+  private final RoundRectangle2D myTrackShape = new RoundRectangle2D.Double();
+  private final Runnable myPendingValueSetter = new Runnable() {
+    @Override
+    public void run() {
+      applyPendingValue();
+    }
+  };
+  private boolean myHasPendingValue;
+  private int myPendingValue;
+
   public DarculaSliderUI(JSlider b) {
     super(b);
   }
@@ -59,34 +78,115 @@ public class DarculaSliderUI extends BasicSliderUI {
     final GraphicsConfig config = GraphicsUtil.setupAAPainting(g);
     final Color bg = getTrackBackground();
     final Color selection = getThumbColor();
+    final RoundRectangle2D shape = myTrackShape;
     if (slider.getOrientation() == JSlider.HORIZONTAL) {
       int cy = (trackBounds.height / 2) - trackSize / 2;
       int cw = trackBounds.width;
       g.translate(trackBounds.x, trackBounds.y + cy);
-      final Area shape = new Area(new RoundRectangle2D.Double(0, 0, cw, trackSize, arc, arc));
+      final Shape clip = g.getClip();
+      shape.setRoundRect(0, 0, cw, trackSize, arc, arc);
       g.setColor(bg);
       g.fill(shape);
       int x = thumbRect.x;
-      shape.intersect(new Area(new Rectangle2D.Double(0, 0, x, trackSize)));
+      g.clipRect(0, 0, x, trackSize);
       g.setColor(selection);
       g.fill(shape);
+      g.setClip(clip);
       g.translate(-trackBounds.x, -(trackBounds.y + cy));
     } else {
       int cx = (trackBounds.width / 2) - trackSize / 2;
       int ch = trackBounds.height;
       g.translate(trackBounds.x + cx, trackBounds.y);
-      final Area shape = new Area(new RoundRectangle2D.Double(0, 0, cx, ch, arc, arc));
+      final Shape clip = g.getClip();
+      shape.setRoundRect(0, 0, cx, ch, arc, arc);
       g.setColor(bg);
       g.fill(shape);
       int y = thumbRect.y;
-      shape.intersect(new Area(new Rectangle2D.Double(0, y, cx, ch)));
+      g.clipRect(0, y, cx, ch);
       g.setColor(selection);
       g.fill(shape);
+      g.setClip(clip);
       g.translate(-(trackBounds.x + cx), -trackBounds.y);
     }
     config.restore();
   }
 
+  @Override
+  protected ChangeListener createChangeListener(JSlider slider) {
+    final ChangeListener listener = super.createChangeListener(slider);
+    return new ChangeListener() {
+      private int myMinimum = slider.getMinimum();
+      private int myMaximum = slider.getMaximum();
+      private int myExtent = slider.getExtent();
+
+      @Override
+      public void stateChanged(ChangeEvent e) {
+        final BoundedRangeModel model = DarculaSliderUI.this.slider.getModel();
+        final boolean rangeChanged = model.getMinimum() != myMinimum
+                                     || model.getMaximum() != myMaximum
+                                     || model.getExtent() != myExtent;
+        myMinimum = model.getMinimum();
+        myMaximum = model.getMaximum();
+        myExtent = model.getExtent();
+        // a new range moves the ticks and labels, and snapping to ticks may change the value
+        // again, so leave those to the basic UI
+        if (rangeChanged || isDragging() || DarculaSliderUI.this.slider.getSnapToTicks()) {
+          listener.stateChanged(e);
+        }
+        else {
+          repaintValueChange();
+        }
+      }
+    };
+  }
+
+  @Override
+  protected TrackListener createTrackListener(JSlider slider) {
+    return new CoalescingTrackListener();
+  }
+
+  @Override
+  protected void uninstallListeners(JSlider slider) {
+    FrameClock.cancel(myPendingValueSetter);
+    myHasPendingValue = false;
+    super.uninstallListeners(slider);
+  }
+
+  private boolean isCoalescingChanges() {
+    return Boolean.TRUE.equals(slider.getClientProperty(COALESCE_CHANGES));
+  }
+
+  private void setValueOnNextFrame(int value) {
+    myPendingValue = value;
+    myHasPendingValue = true;
+    FrameClock.schedule(myPendingValueSetter);
+  }
+
+  private void applyPendingValue() {
+    FrameClock.cancel(myPendingValueSetter);
+    if (myHasPendingValue) {
+      myHasPendingValue = false;
+      slider.setValue(myPendingValue);
+    }
+  }
+
+  /**
+   * Moves the thumb to the current value and repaints the track between the old and the new
+   * thumb position, instead of the whole slider.
+   */
+  private void repaintValueChange() {
+    final Rectangle damage = new Rectangle(thumbRect);
+    calculateThumbLocation();
+    damage.add(thumbRect);
+    if (slider.getOrientation() == JSlider.HORIZONTAL) {
+      damage.add(new Rectangle(damage.x, trackRect.y, damage.width, trackRect.height));
+    }
+    else {
+      damage.add(new Rectangle(trackRect.x, damage.y, trackRect.width, damage.height));
+    }
+    slider.repaint(damage);
+  }
+
   @Override
   protected Dimension getThumbSize() {
     if (isPlainThumb()) {
@@ -97,17 +197,17 @@ public class DarculaSliderUI extends BasicSliderUI {
 
   @NotNull
   protected Color getTrackBackground() {
-    return UIManager.getColor("Slider.trackBackground");
+    return DarculaTheme.get().sliderTrackBackground;
   }
 
   @NotNull
   protected Color getSelectedTrackColor() {
-    return UIManager.getColor("Slider.selectedTrackColor");
+    return DarculaTheme.get().sliderSelectedTrackColor;
   }
 
   @NotNull
   protected Color getDisabledTickColor() {
-    return UIManager.getColor("Slider.disabledTickColor");
+    return DarculaTheme.get().sliderDisabledTickColor;
   }
 
   @Override
@@ -252,7 +352,7 @@ public class DarculaSliderUI extends BasicSliderUI {
 
   @NotNull
   protected Color getThumbBorderColor() {
-    return slider.isEnabled() ? UIManager.getColor("Slider.thumbBorderColor") : UIManager.getColor("Slider.thumbBorderColorDisabled");
+    return slider.isEnabled() ? DarculaTheme.get().sliderThumbBorderColor : DarculaTheme.get().sliderThumbBorderColorDisabled;
   }
 
   protected boolean isPlainThumb() {
@@ -260,4 +360,75 @@ public class DarculaSliderUI extends BasicSliderUI {
     return (!slider.getPaintTicks() && paintThumbArrowShape == null) ||
         paintThumbArrowShape == Boolean.FALSE;
   }
+
+  /**
+   * Same as the basic track listener, but with {@link #COALESCE_CHANGES} the value computed on
+   * drag is only remembered and set on the next frame. The thumb follows the mouse immediately.
+   */
+  private class CoalescingTrackListener extends TrackListener {
+    @Override
+    public void mouseReleased(MouseEvent e) {
+      applyPendingValue();
+      super.mouseReleased(e);
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+      if (!isCoalescingChanges()) {
+        super.mouseDragged(e);
+        return;
+      }
+      if (!slider.isEnabled()) {
+        return;
+      }
+
+      currentMouseX = e.getX();
+      currentMouseY = e.getY();
+
+      if (!isDragging()) {
+        return;
+      }
+
+      slider.setValueIsAdjusting(true);
+
+      if (slider.getOrientation() == JSlider.VERTICAL) {
+        int halfThumbHeight = thumbRect.height / 2;
+        int thumbTop = e.getY() - offset;
+        int trackTop = trackRect.y;
+        int trackBottom = trackRect.y + (trackRect.height - 1);
+        int vMax = yPositionForValue(slider.getMaximum() - slider.getExtent());
+
+        if (drawInverted()) {
+          trackBottom = vMax;
+        }
+        else {
+          trackTop = vMax;
+        }
+        thumbTop = Math.max(thumbTop, trackTop - halfThumbHeight);
+        thumbTop = Math.min(thumbTop, trackBottom - halfThumbHeight);
+
+        setThumbLocation(thumbRect.x, thumbTop);
+        setValueOnNextFrame(valueForYPosition(thumbTop + halfThumbHeight));
+      }
+      else {
+        int halfThumbWidth = thumbRect.width / 2;
+        int thumbLeft = e.getX() - offset;
+        int trackLeft = trackRect.x;
+        int trackRight = trackRect.x + (trackRect.width - 1);
+        int hMax = xPositionForValue(slider.getMaximum() - slider.getExtent());
+
+        if (drawInverted()) {
+          trackLeft = hMax;
+        }
+        else {
+          trackRight = hMax;
+        }
+        thumbLeft = Math.max(thumbLeft, trackLeft - halfThumbWidth);
+        thumbLeft = Math.min(thumbLeft, trackRight - halfThumbWidth);
+
+        setThumbLocation(thumbLeft, thumbRect.y);
+        setValueOnNextFrame(valueForXPosition(thumbLeft + halfThumbWidth));
+      }
+    }
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.bulenkov.darcula.ui;
 
+import com.bulenkov.darcula.DarculaTheme;
 import com.bulenkov.darcula.DarculaUIUtil;
 import com.bulenkov.iconloader.util.*;
 
@@ -50,7 +51,7 @@ public class DarculaSpinnerBorder implements Border, UIResource {
 
     g.setColor(UIUtil.getTextFieldBackground());
     g.fillRoundRect(x1, y1, width1, height1, 5*scaleFactor, 5*scaleFactor);
-    g.setColor(UIManager.getColor(spinner.isEnabled() ? "Spinner.darcula.enabledButtonColor" : "Spinner.darcula.disabledButtonColor"));
+    g.setColor(spinner.isEnabled() ? DarculaTheme.get().spinnerEnabledButtonColor : DarculaTheme.get().spinnerDisabledButtonColor);
     if (editor != null) {
       final int off = editor.getBounds().x + editor.getWidth() + ((JSpinner)c).getInsets().left + 1*scaleFactor;
       final Area rect = new Area(new RoundRectangle2D.Double(x1, y1, width1, height1, 5*scaleFactor, 5*scaleFactor));
@@ -68,7 +69,8 @@ public class DarculaSpinnerBorder implements Border, UIResource {
     }
 
     if (focused) {
-      DarculaUIUtil.paintFocusRing(g, x1 + 2*scaleFactor, y1, width1 - 3*scaleFactor, height1);
+      final Rectangle ring = getFocusRingBounds(x, y, width, height);
+      DarculaUIUtil.paintFocusRing(g, ring.x, ring.y, ring.width, ring.height);
     } else {
       g.setColor(new DoubleColor(Gray._149,Gray._100));
       g.drawRoundRect(x1, y1, width1, height1, 5*scaleFactor, 5*scaleFactor);
@@ -76,6 +78,18 @@ public class DarculaSpinnerBorder implements Border, UIResource {
     config.restore();
   }
 
+  /**
+   * @return widths of the bands along the edges of <code>c</code> that change with focus
+   */
+  public Insets getFocusRingInsets(Component c) {
+    return DarculaUIUtil.getFocusRingInsets(c, getFocusRingBounds(0, 0, c.getWidth(), c.getHeight()), 0);
+  }
+
+  private static Rectangle getFocusRingBounds(int x, int y, int width, int height) {
+    final int scaleFactor = DarculaUIUtil.getScaleFactor();
+    return new Rectangle(x + 3*scaleFactor, y + 3*scaleFactor, width - 5*scaleFactor, height - 6*scaleFactor);
+  }
+
   @Override
   public Insets getBorderInsets(Component c) {
     final int scaleFactor = DarculaUIUtil.getScaleFactor();
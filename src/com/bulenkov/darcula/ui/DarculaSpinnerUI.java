@@ -38,12 +38,12 @@ public class DarculaSpinnerUI extends BasicSpinnerUI {
   private FocusAdapter myFocusListener = new FocusAdapter() {
     @Override
     public void focusGained(FocusEvent e) {
-      spinner.repaint();
+      repaintFocusRing();
     }
 
     @Override
     public void focusLost(FocusEvent e) {
-      spinner.repaint();
+      repaintFocusRing();
     }
   };
 
@@ -52,6 +52,15 @@ public class DarculaSpinnerUI extends BasicSpinnerUI {
     return new DarculaSpinnerUI();
   }
 
+  private void repaintFocusRing() {
+    final Border border = spinner.getBorder();
+    if (border instanceof DarculaSpinnerBorder) {
+      DarculaUIUtil.repaintFocusRing(spinner, ((DarculaSpinnerBorder)border).getFocusRingInsets(spinner));
+    } else {
+      spinner.repaint();
+    }
+  }
+
   @Override
   protected void replaceEditor(JComponent oldEditor, JComponent newEditor) {
       super.replaceEditor(oldEditor, newEditor);
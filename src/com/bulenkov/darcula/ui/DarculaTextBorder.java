@@ -58,7 +58,8 @@ public class DarculaTextBorder implements Border, UIResource {
     g.translate(x, y);
 
     if (c.hasFocus()) {
-      DarculaUIUtil.paintFocusRing(g, 2, 2, width - 4, height - 4);
+      final Rectangle ring = getFocusRingBounds(width, height);
+      DarculaUIUtil.paintFocusRing(g, ring.x, ring.y, ring.width, ring.height);
     } else {
       boolean editable = !(c instanceof JTextComponent) || (((JTextComponent)c).isEditable());
       g.setColor(c.isEnabled() && editable ? Gray._100 : new Color(0x535353));
@@ -67,4 +68,21 @@ public class DarculaTextBorder implements Border, UIResource {
     g.translate(-x, -y);
     config.restore();
   }
+
+  /**
+   * @return widths of the bands along the edges of <code>c</code> that change with focus. Search
+   * fields get theirs from {@link DarculaTextFieldUI}, which paints their ring.
+   */
+  public Insets getFocusRingInsets(JComponent c) {
+    if (DarculaTextFieldUI.isSearchField(c) && ((JTextField)c).getUI() instanceof DarculaTextFieldUI) {
+      final Rectangle ring = ((DarculaTextFieldUI)((JTextField)c).getUI()).getDrawingRect();
+      return DarculaUIUtil.getFocusRingInsets(c, ring, ring.height + 6);
+    }
+    // DarculaTextFieldUI also rounds the background corners next to the ring
+    return DarculaUIUtil.getFocusRingInsets(c, getFocusRingBounds(c.getWidth(), c.getHeight()), 0);
+  }
+
+  private static Rectangle getFocusRingBounds(int width, int height) {
+    return new Rectangle(2, 2, width - 4, height - 4);
+  }
 }
@@ -36,12 +36,12 @@ public class DarculaTextFieldUI extends BasicTextFieldUI {
   private final FocusListener myFocusListener = new FocusAdapter() {
     @Override
     public void focusGained(FocusEvent e) {
-      getComponent().repaint();
+      repaintFocusRing();
     }
 
     @Override
     public void focusLost(FocusEvent e) {
-      getComponent().repaint();
+      repaintFocusRing();
     }
   };
 
@@ -106,6 +106,19 @@ public class DarculaTextFieldUI extends BasicTextFieldUI {
     super.uninstallListeners();
   }
 
+  /**
+   * Focus changes only the ring and the rounded background corners next to it.
+   */
+  protected void repaintFocusRing() {
+    final JTextComponent c = getComponent();
+    final Border border = c.getBorder();
+    if (border instanceof DarculaTextBorder) {
+      DarculaUIUtil.repaintFocusRing(c, ((DarculaTextBorder)border).getFocusRingInsets(c));
+    } else {
+      c.repaint();
+    }
+  }
+
   protected void showSearchPopup() {
     final Object value = getComponent().getClientProperty("JTextField.Search.FindPopup");
     if (value instanceof JPopupMenu) {
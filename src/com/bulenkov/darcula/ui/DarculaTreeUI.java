@@ -17,20 +17,37 @@ package com.bulenkov.darcula.ui;
 
 
 import com.bulenkov.darcula.DarculaUIUtil;
+import com.bulenkov.darcula.util.AsyncTreeModel;
+import com.bulenkov.iconloader.util.GraphicsConfig;
 import com.bulenkov.iconloader.util.SystemInfo;
 import com.bulenkov.iconloader.util.UIUtil;
 
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.event.*;
 import javax.swing.plaf.ComponentUI;
+import javax.swing.plaf.TreeUI;
 import javax.swing.plaf.UIResource;
+import javax.swing.plaf.basic.BasicGraphicsUtils;
 import javax.swing.plaf.basic.BasicTreeUI;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
+import javax.swing.tree.TreeSelectionModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
+import java.awt.geom.Line2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 
 /**
  * @author Konstantin Bulenkov
@@ -45,6 +62,21 @@ public class DarculaTreeUI extends BasicTreeUI {
 
   public static final String SOURCE_LIST_CLIENT_PROPERTY = "mac.ui.source.list";
   public static final String STRIPED_CLIENT_PROPERTY = "mac.ui.striped";
+  /**
+   * When <code>Boolean.TRUE</code>, placeholders of an {@link AsyncTreeModel} are painted as an
+   * animated loading row instead of going through the cell renderer.
+   */
+  public static final String ASYNC_CHILDREN_CLIENT_PROPERTY = "Tree.asyncChildren";
+  /**
+   * When <code>Boolean.TRUE</code>, typing in the tree searches all nodes, including collapsed
+   * ones, instead of jumping to the next visible row with the typed prefix.
+   */
+  public static final String SPEED_SEARCH_CLIENT_PROPERTY = "Tree.speedSearch";
+
+  private static final int LOADING_SPOKES = 8;
+  private static final int LOADING_FRAME_MILLIS = 100;
+  /** Cost of sizing a row when the layout cache is rebuilt, relative to shifting one row */
+  private static final int REBUILD_ROW_COST = 32;
 
   private static final Border LIST_BACKGROUND_PAINTER = UIManager.getBorder("List.sourceListBackgroundPainter");
   private static final Border LIST_SELECTION_BACKGROUND_PAINTER = UIManager.getBorder("List.sourceListSelectionBackgroundPainter");
@@ -54,6 +86,44 @@ public class DarculaTreeUI extends BasicTreeUI {
   private boolean invertLineColor;
   private boolean myForceDontPaintLines = false;
 
+  // state shared by all rows of one paint, see snapshotPaintState()
+  private boolean myPainting;
+  private int myContainerWidth;
+  private int myXOffset;
+  private boolean mySourceList;
+  private boolean myStriped;
+  private boolean myFocused;
+  private Color myStripeColor;
+  private Color mySelectionBackground;
+  private boolean myAsyncChildren;
+
+  private Timer myLoadingTimer;
+  private final Line2D.Double myLoadingSpoke = new Line2D.Double();
+  private Color myLoadingForeground;
+  /** Spoke colors by age, see getLoadingSpokeColors() */
+  private Color[] myLoadingSpokeColors;
+
+  // the selected rows as one range when they are contiguous, see validateSelectedRange()
+  private boolean mySelectedRangeValid;
+  private boolean mySelectedRangeContiguous;
+  private int mySelectedRangeFirst;
+  private int mySelectedRangeLast;
+  private TreeModel myListenedModel;
+  private final SelectedRangeInvalidator mySelectedRangeInvalidator = new SelectedRangeInvalidator();
+
+  private TreeSpeedSearch mySpeedSearch;
+
+  // the subtree of expandAll() or collapseAll() while it runs
+  private TreePath myExpansionBatch;
+  private boolean myExpansionBatchEscaped;
+
+  // centered node icons for unselected (0) and focused selected (1) rows
+  private final Icon[] myExpandedNodeIcons = new Icon[2];
+  private final Icon[] myCollapsedNodeIcons = new Icon[2];
+  private Icon myNodeIconsExpandedBase;
+  private Icon myNodeIconsCollapsedBase;
+  private boolean myNodeIconsDarcula;
+
 
   @Override
   public int getRightChildIndent() {
@@ -85,16 +155,7 @@ public class DarculaTreeUI extends BasicTreeUI {
     private boolean isSelected(MouseEvent e) {
       final JTree tree = (JTree)e.getSource();
       final int selected = tree.getClosestRowForLocation(e.getX(), e.getY());
-      final int[] rows = tree.getSelectionRows();
-      if (rows != null) {
-        for (int row : rows) {
-          if (row == selected) {
-            return true;
-          }
-        }
-      }
-
-      return false;
+      return selected != -1 && isSelectedRow(selected);
     }
 
     private void handle(MouseEvent e) {
@@ -136,12 +197,204 @@ public class DarculaTreeUI extends BasicTreeUI {
     tree.addMouseListener(mySelectionListener);
   }
 
+  @Override
+  protected void installListeners() {
+    super.installListeners();
+    tree.addTreeSelectionListener(mySelectedRangeInvalidator);
+    tree.addPropertyChangeListener(mySelectedRangeInvalidator);
+    listenToModel(tree.getModel());
+    mySpeedSearch = new TreeSpeedSearch(tree);
+  }
+
+  @Override
+  protected void uninstallListeners() {
+    tree.removeTreeSelectionListener(mySelectedRangeInvalidator);
+    tree.removePropertyChangeListener(mySelectedRangeInvalidator);
+    listenToModel(null);
+    if (mySpeedSearch != null) {
+      mySpeedSearch.dispose();
+      mySpeedSearch = null;
+    }
+    super.uninstallListeners();
+  }
+
+  /**
+   * JTree notifies the expansion listener of its UI before the others, so it is wrapped rather
+   * than joined by another listener, which would take over that slot during <code>setUI</code>.
+   * During {@link #expandAll(TreePath)} and {@link #collapseAll(TreePath)} the basic handler is
+   * skipped, and the layout cache is updated once at the end.
+   */
+  @Override
+  protected TreeExpansionListener createTreeExpansionListener() {
+    final TreeExpansionListener delegate = super.createTreeExpansionListener();
+    return new TreeExpansionListener() {
+      @Override
+      public void treeExpanded(TreeExpansionEvent event) {
+        mySelectedRangeValid = false;
+        if (!isBatched(event)) {
+          delegate.treeExpanded(event);
+        }
+      }
+
+      @Override
+      public void treeCollapsed(TreeExpansionEvent event) {
+        mySelectedRangeValid = false;
+        if (!isBatched(event)) {
+          delegate.treeCollapsed(event);
+        }
+      }
+
+      private boolean isBatched(TreeExpansionEvent event) {
+        if (myExpansionBatch == null) {
+          return false;
+        }
+        if (!myExpansionBatch.isDescendant(event.getPath())) {
+          myExpansionBatchEscaped = true;
+        }
+        return true;
+      }
+    };
+  }
+
+  @Override
+  protected KeyListener createKeyListener() {
+    final KeyListener delegate = super.createKeyListener();
+    return new KeyListener() {
+      @Override
+      public void keyTyped(KeyEvent e) {
+        if (isSpeedSearchEnabled() && mySpeedSearch.keyTyped(e)) {
+          e.consume();
+          return;
+        }
+        delegate.keyTyped(e);
+      }
+
+      @Override
+      public void keyPressed(KeyEvent e) {
+        if (isSpeedSearchEnabled() && mySpeedSearch.keyPressed(e)) {
+          // keeps the tree key bindings from handling the key too
+          e.consume();
+          return;
+        }
+        delegate.keyPressed(e);
+      }
+
+      @Override
+      public void keyReleased(KeyEvent e) {
+        delegate.keyReleased(e);
+      }
+    };
+  }
+
+  private boolean isSpeedSearchEnabled() {
+    return mySpeedSearch != null && tree != null && Boolean.TRUE.equals(tree.getClientProperty(SPEED_SEARCH_CLIENT_PROPERTY));
+  }
+
+  private void listenToModel(TreeModel model) {
+    if (myListenedModel != null) {
+      myListenedModel.removeTreeModelListener(mySelectedRangeInvalidator);
+    }
+    myListenedModel = model;
+    if (model != null) {
+      model.addTreeModelListener(mySelectedRangeInvalidator);
+    }
+    mySelectedRangeValid = false;
+  }
+
+  /**
+   * Same as <code>tree.isRowSelected(row)</code>, but a bounds check when the selection is one
+   * contiguous range of rows, like after "select all".
+   */
+  protected boolean isSelectedRow(int row) {
+    validateSelectedRange();
+    if (mySelectedRangeContiguous) {
+      return row >= mySelectedRangeFirst && row <= mySelectedRangeLast;
+    }
+    return tree.isRowSelected(row);
+  }
+
+  /**
+   * Recomputes the selected range after the selection, the expanded paths or the model changed.
+   * The selection model tracks its min and max rows, so only a selection whose row span equals
+   * its size has to be checked for hidden selected paths.
+   */
+  private void validateSelectedRange() {
+    if (mySelectedRangeValid) {
+      return;
+    }
+    mySelectedRangeValid = true;
+    mySelectedRangeContiguous = false;
+    final TreeSelectionModel model = tree.getSelectionModel();
+    if (model == null) {
+      return;
+    }
+    final int count = model.getSelectionCount();
+    if (count == 0) {
+      mySelectedRangeContiguous = true;
+      mySelectedRangeFirst = 0;
+      mySelectedRangeLast = -1;
+      return;
+    }
+    final int first = model.getMinSelectionRow();
+    final int last = model.getMaxSelectionRow();
+    if (first != -1 && last - first + 1 == count) {
+      // the rows are distinct, so the span is filled unless a selected path has no row
+      final int[] rows = model.getSelectionRows();
+      if (rows != null && rows.length == count) {
+        mySelectedRangeContiguous = true;
+        mySelectedRangeFirst = first;
+        mySelectedRangeLast = last;
+      }
+    }
+  }
+
+  private class SelectedRangeInvalidator implements TreeSelectionListener, TreeModelListener, PropertyChangeListener {
+    @Override
+    public void valueChanged(TreeSelectionEvent e) {
+      mySelectedRangeValid = false;
+    }
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent e) {
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent e) {
+      mySelectedRangeValid = false;
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent e) {
+      mySelectedRangeValid = false;
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent e) {
+      mySelectedRangeValid = false;
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+      final String name = evt.getPropertyName();
+      if (JTree.TREE_MODEL_PROPERTY.equals(name)) {
+        listenToModel(tree.getModel());
+      }
+      else if (JTree.SELECTION_MODEL_PROPERTY.equals(name) || JTree.ROOT_VISIBLE_PROPERTY.equals(name)) {
+        mySelectedRangeValid = false;
+      }
+    }
+  }
+
   @Override
   public void uninstallUI(JComponent c) {
     super.uninstallUI(c);
 
     UIManager.put("Tree.repaintWholeRow", myOldRepaintAllRowValue);
     c.removeMouseListener(mySelectionListener);
+    if (myLoadingTimer != null) {
+      myLoadingTimer.stop();
+      myLoadingTimer = null;
+    }
   }
 
   @Override
@@ -231,6 +484,244 @@ public class DarculaTreeUI extends BasicTreeUI {
     });
   }
 
+  /**
+   * Expands <code>path</code> and every node below it. Under a Darcula tree the layout cache is
+   * updated once, see {@link #expandAll(TreePath)}.
+   */
+  public static void expandAll(JTree tree, TreePath path) {
+    final TreeUI ui = tree.getUI();
+    if (ui instanceof DarculaTreeUI) {
+      ((DarculaTreeUI)ui).expandAll(path);
+    }
+    else if (path != null) {
+      expandSubtree(tree, path);
+    }
+  }
+
+  /**
+   * Collapses <code>path</code> and every expanded node below it. Under a Darcula tree the layout
+   * cache is updated once, see {@link #collapseAll(TreePath)}.
+   */
+  public static void collapseAll(JTree tree, TreePath path) {
+    final TreeUI ui = tree.getUI();
+    if (ui instanceof DarculaTreeUI) {
+      ((DarculaTreeUI)ui).collapseAll(path);
+    }
+    else if (path != null) {
+      collapseSubtree(tree, collectExpandedPaths(tree, path));
+    }
+  }
+
+  /**
+   * Expands <code>path</code> and every node below it. Expansion listeners get the usual
+   * <code>treeWillExpand</code> and <code>treeExpanded</code> events for each node, so they can
+   * load children or veto, and a vetoed node is not descended into. This delegate skips its
+   * per-node work on those events and updates the layout cache once at the end, with one
+   * revalidation and repaint, so until then the rows the listeners see are those from before
+   * the call.
+   */
+  public void expandAll(TreePath path) {
+    if (tree == null || treeModel == null || path == null) {
+      return;
+    }
+    final int rowsBelow = startExpansionBatch(path);
+    final List<TreePath> paths;
+    try {
+      paths = expandSubtree(tree, path);
+    }
+    finally {
+      myExpansionBatch = null;
+    }
+    finishExpansionBatch(paths, true, rowsBelow);
+  }
+
+  /**
+   * Collapses <code>path</code> and every expanded node below it, deepest first, with the usual
+   * per-node events and one layout cache update at the end, see {@link #expandAll(TreePath)}.
+   */
+  public void collapseAll(TreePath path) {
+    if (tree == null || treeModel == null || path == null || !tree.isExpanded(path)) {
+      return;
+    }
+    final List<TreePath> expanded = collectExpandedPaths(tree, path);
+    completeEditing();
+    final int rowsBelow = startExpansionBatch(path);
+    final List<TreePath> paths;
+    try {
+      paths = collapseSubtree(tree, expanded);
+    }
+    finally {
+      myExpansionBatch = null;
+    }
+    finishExpansionBatch(paths, false, rowsBelow);
+  }
+
+  /**
+   * Expands the subtree top down, asking the model for the children of a node only after it has
+   * been expanded, when its will-expand listeners had the chance to fill them in.
+   *
+   * @return the expanded non-leaf nodes, parents first
+   */
+  private static List<TreePath> expandSubtree(JTree tree, TreePath path) {
+    final List<TreePath> paths = new ArrayList<TreePath>();
+    final Deque<TreePath> stack = new ArrayDeque<TreePath>();
+    stack.push(path);
+    while (!stack.isEmpty()) {
+      final TreePath current = stack.pop();
+      final TreeModel model = tree.getModel();
+      if (model.isLeaf(current.getLastPathComponent())) {
+        continue;
+      }
+      tree.expandPath(current);
+      if (!tree.isExpanded(current)) {
+        // vetoed
+        continue;
+      }
+      paths.add(current);
+      final Object node = current.getLastPathComponent();
+      for (int i = model.getChildCount(node) - 1; i >= 0; i--) {
+        stack.push(current.pathByAddingChild(model.getChild(node, i)));
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Collapses <code>paths</code> deepest first, so the parents stay expanded while their children
+   * collapse.
+   *
+   * @return the paths that were collapsed, parents first
+   */
+  private static List<TreePath> collapseSubtree(JTree tree, List<TreePath> paths) {
+    for (int i = paths.size() - 1; i >= 0; i--) {
+      tree.collapsePath(paths.get(i));
+    }
+    final List<TreePath> collapsed = new ArrayList<TreePath>(paths.size());
+    for (TreePath p : paths) {
+      if (!tree.isExpanded(p)) {
+        collapsed.add(p);
+      }
+    }
+    return collapsed;
+  }
+
+  /**
+   * @return <code>path</code> and the expanded nodes below it in depth-first order
+   */
+  private static List<TreePath> collectExpandedPaths(JTree tree, TreePath path) {
+    final TreeModel model = tree.getModel();
+    final List<TreePath> paths = new ArrayList<TreePath>();
+    final Deque<TreePath> stack = new ArrayDeque<TreePath>();
+    stack.push(path);
+    while (!stack.isEmpty()) {
+      final TreePath current = stack.pop();
+      final Object node = current.getLastPathComponent();
+      if (model.isLeaf(node) || !tree.isExpanded(current)) {
+        continue;
+      }
+      paths.add(current);
+      for (int i = model.getChildCount(node) - 1; i >= 0; i--) {
+        stack.push(current.pathByAddingChild(model.getChild(node, i)));
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Makes the expansion handler skip its per-node work until the batch ends.
+   *
+   * @return the number of rows from <code>path</code> down, before the batch
+   */
+  private int startExpansionBatch(TreePath path) {
+    myExpansionBatch = path;
+    myExpansionBatchEscaped = false;
+    return treeState == null ? 0 : treeState.getRowCount() - Math.max(0, treeState.getRowForPath(path));
+  }
+
+  private void finishExpansionBatch(List<TreePath> paths, boolean expand, int rowsBelow) {
+    if (paths.isEmpty() && !myExpansionBatchEscaped) {
+      return;
+    }
+    // node by node, the layout cache moves every row below each changed node, while a rebuild
+    // sizes every visible row once; both are linear in their own terms, so take the cheaper one.
+    // A listener may also have expanded or collapsed something outside of the subtree.
+    final int rowCount = treeState == null ? 0 : treeState.getRowCount();
+    if (myExpansionBatchEscaped || (long)paths.size() * rowsBelow > (long)REBUILD_ROW_COST * rowCount) {
+      rebuildLayoutCache();
+    }
+    else {
+      updateLayoutCache(paths, expand);
+    }
+    mySelectedRangeValid = false;
+    updateLeadSelectionRow();
+    updateSize();
+  }
+
+  /**
+   * Applies the new expanded state to the layout cache node by node, parents first when expanding
+   * and children first when collapsing. The selection rows are mapped once at the end.
+   */
+  private void updateLayoutCache(List<TreePath> paths, boolean expand) {
+    if (treeState == null) {
+      return;
+    }
+    treeState.setSelectionModel(null);
+    try {
+      if (expand) {
+        for (TreePath p : paths) {
+          treeState.setExpandedState(p, true);
+        }
+      }
+      else {
+        for (int i = paths.size() - 1; i >= 0; i--) {
+          treeState.setExpandedState(paths.get(i), false);
+        }
+      }
+    }
+    finally {
+      treeState.setSelectionModel(treeSelectionModel);
+    }
+  }
+
+  /**
+   * Recreates the layout cache from the expanded state of the tree, expanding the nodes top down
+   * in depth-first order. The selection rows are mapped once at the end.
+   */
+  private void rebuildLayoutCache() {
+    if (treeState == null || treeModel == null) {
+      return;
+    }
+    treeState.setSelectionModel(null);
+    try {
+      treeState.setModel(treeModel);
+      final Object root = treeModel.getRoot();
+      if (root == null) {
+        return;
+      }
+      final TreePath rootPath = new TreePath(root);
+      if (!tree.isExpanded(rootPath)) {
+        treeState.setExpandedState(rootPath, false);
+        return;
+      }
+      final Deque<TreePath> stack = new ArrayDeque<TreePath>();
+      stack.push(rootPath);
+      while (!stack.isEmpty()) {
+        final TreePath path = stack.pop();
+        treeState.setExpandedState(path, true);
+        final Object node = path.getLastPathComponent();
+        for (int i = treeModel.getChildCount(node) - 1; i >= 0; i--) {
+          final TreePath child = path.pathByAddingChild(treeModel.getChild(node, i));
+          if (!treeModel.isLeaf(child.getLastPathComponent()) && tree.isExpanded(child)) {
+            stack.push(child);
+          }
+        }
+      }
+    }
+    finally {
+      treeState.setSelectionModel(treeSelectionModel);
+    }
+  }
+
   public void setForceDontPaintLines() {
     myForceDontPaintLines = true;
   }
@@ -303,24 +794,20 @@ public class DarculaTreeUI extends BasicTreeUI {
                           final boolean isExpanded,
                           final boolean hasBeenExpanded,
                           final boolean isLeaf) {
-    final int containerWidth = tree.getParent() instanceof JViewport ? tree.getParent().getWidth() : tree.getWidth();
-    final int xOffset = tree.getParent() instanceof JViewport ? ((JViewport)tree.getParent()).getViewPosition().x : 0;
-
     if (path != null) {
-      boolean selected = tree.isPathSelected(path);
-      Graphics2D rowGraphics = (Graphics2D)g.create();
-      rowGraphics.setClip(clipBounds);
-
-      final Object sourceList = tree.getClientProperty(SOURCE_LIST_CLIENT_PROPERTY);
-      Color background = tree.getBackground();
-
-      if ((row % 2) == 0 && Boolean.TRUE.equals(tree.getClientProperty(STRIPED_CLIENT_PROPERTY))) {
-        background = UIUtil.getDecoratedRowColor();
+      if (!myPainting) {
+        snapshotPaintState();
       }
-
-      if (sourceList != null && (Boolean)sourceList) {
+      final int containerWidth = myContainerWidth;
+      final int xOffset = myXOffset;
+      boolean selected = isSelectedRow(row);
+
+      if (mySourceList) {
+        // the source list painters may change any graphics state
+        Graphics2D rowGraphics = (Graphics2D)g.create();
+        rowGraphics.setClip(clipBounds);
         if (selected) {
-          if (tree.hasFocus()) {
+          if (myFocused) {
             LIST_FOCUSED_SELECTION_BACKGROUND_PAINTER.paintBorder(tree, rowGraphics, xOffset, bounds.y, containerWidth, bounds.height);
           }
           else {
@@ -328,62 +815,212 @@ public class DarculaTreeUI extends BasicTreeUI {
           }
         }
         else {
-          rowGraphics.setColor(background);
+          rowGraphics.setColor(myStriped && (row % 2) == 0 ? myStripeColor : tree.getBackground());
           rowGraphics.fillRect(xOffset, bounds.y, containerWidth, bounds.height);
         }
+        rowGraphics.dispose();
+      }
+      else if (selected) {
+        g.setColor(mySelectionBackground);
+        g.fillRect(xOffset, bounds.y, containerWidth, bounds.height);
       }
-      else {
-        if (selected) {
-          Color bg = UIUtil.getTreeSelectionBackground(tree.hasFocus() || Boolean.TRUE.equals(tree.getClientProperty(TREE_TABLE_TREE_KEY)));
 
-          rowGraphics.setColor(bg);
-          rowGraphics.fillRect(xOffset, bounds.y, containerWidth, bounds.height);
-        }
+      if (myAsyncChildren && AsyncTreeModel.isLoadingNode(path.getLastPathComponent())) {
+        paintLoadingRow(g, bounds, path.getLastPathComponent().toString());
+        return;
       }
 
+      // g is clipped to clipBounds by BasicTreeUI.paint(), rows don't need their own copy
       if (shouldPaintExpandControl(path, row, isExpanded, hasBeenExpanded, isLeaf)) {
-        paintExpandControl(rowGraphics, bounds, insets, bounds, path, row, isExpanded, hasBeenExpanded, isLeaf);
+        paintExpandControl(g, bounds, insets, bounds, path, row, isExpanded, hasBeenExpanded, isLeaf);
       }
+    }
+    super.paintRow(g, clipBounds, insets, bounds, path, row, isExpanded, hasBeenExpanded, isLeaf);
+  }
+
+  /**
+   * Reads everything that is the same for all rows of one paint.
+   */
+  private void snapshotPaintState() {
+    final Container parent = tree.getParent();
+    myContainerWidth = parent instanceof JViewport ? parent.getWidth() : tree.getWidth();
+    myXOffset = parent instanceof JViewport ? ((JViewport)parent).getViewPosition().x : 0;
+    mySourceList = Boolean.TRUE.equals(tree.getClientProperty(SOURCE_LIST_CLIENT_PROPERTY));
+    myStriped = Boolean.TRUE.equals(tree.getClientProperty(STRIPED_CLIENT_PROPERTY));
+    myFocused = tree.hasFocus();
+    myStripeColor = myStriped ? UIUtil.getDecoratedRowColor() : null;
+    mySelectionBackground = UIUtil.getTreeSelectionBackground(myFocused || Boolean.TRUE.equals(tree.getClientProperty(TREE_TABLE_TREE_KEY)));
+    myAsyncChildren = Boolean.TRUE.equals(tree.getClientProperty(ASYNC_CHILDREN_CLIENT_PROPERTY));
+
+    final Icon expanded = DarculaUIUtil.getTreeExpandedIcon();
+    final Icon collapsed = DarculaUIUtil.getTreeCollapsedIcon();
+    final boolean darcula = UIUtil.isUnderDarcula();
+    if (expanded != myNodeIconsExpandedBase || collapsed != myNodeIconsCollapsedBase || darcula != myNodeIconsDarcula
+        || myExpandedNodeIcons[0] == null) {
+      // the icons come from the look and feel defaults and already match the scale
+      myExpandedNodeIcons[0] = DarculaUIUtil.getTreeNodeIcon(true, false, false);
+      myCollapsedNodeIcons[0] = DarculaUIUtil.getTreeNodeIcon(false, false, false);
+      myExpandedNodeIcons[1] = DarculaUIUtil.getTreeNodeIcon(true, true, true);
+      myCollapsedNodeIcons[1] = DarculaUIUtil.getTreeNodeIcon(false, true, true);
+      myNodeIconsExpandedBase = expanded;
+      myNodeIconsCollapsedBase = collapsed;
+      myNodeIconsDarcula = darcula;
+    }
+  }
+
+  private Color[] getLoadingSpokeColors(Color foreground) {
+    if (myLoadingSpokeColors == null || !foreground.equals(myLoadingForeground)) {
+      myLoadingSpokeColors = new Color[LOADING_SPOKES];
+      for (int age = 0; age < LOADING_SPOKES; age++) {
+        myLoadingSpokeColors[age] = new Color(foreground.getRed(), foreground.getGreen(), foreground.getBlue(),
+                                              255 - age * 200 / LOADING_SPOKES);
+      }
+      myLoadingForeground = foreground;
+    }
+    return myLoadingSpokeColors;
+  }
+
+  /**
+   * Paints a spinner and the placeholder text, and keeps the spinner turning while the row is visible.
+   */
+  private void paintLoadingRow(Graphics g, Rectangle bounds, String text) {
+    final Graphics2D g2 = (Graphics2D)g;
+    final GraphicsConfig config = new GraphicsConfig(g2);
+    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+    Color foreground = tree.getForeground();
+    if (foreground == null) {
+      foreground = UIUtil.getTreeForeground();
+    }
+    if (foreground == null) {
+      foreground = Color.GRAY;
+    }
+    final int size = Math.max(4, Math.min(12, bounds.height - 4));
+    final double cx = bounds.x + size / 2.0;
+    final double cy = bounds.y + bounds.height / 2.0;
+    final int phase = (int)(System.currentTimeMillis() / LOADING_FRAME_MILLIS % LOADING_SPOKES);
+    g2.setStroke(new BasicStroke(Math.max(1f, size / 6f), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+    final Color[] colors = getLoadingSpokeColors(foreground);
+    for (int i = 0; i < LOADING_SPOKES; i++) {
+      final double angle = 2 * Math.PI * i / LOADING_SPOKES;
+      final double cos = Math.cos(angle);
+      final double sin = Math.sin(angle);
+      // the spoke at the current phase is the most opaque, the ones behind it fade out
+      g2.setColor(colors[(phase - i + LOADING_SPOKES) % LOADING_SPOKES]);
+      myLoadingSpoke.setLine(cx + cos * size / 4.0, cy + sin * size / 4.0, cx + cos * size / 2.0, cy + sin * size / 2.0);
+      g2.draw(myLoadingSpoke);
+    }
+    config.restore();
+
+    final Font font = tree.getFont();
+    final FontMetrics fm = tree.getFontMetrics(font);
+    g.setFont(font);
+    final Color textColor = UIManager.getColor("Label.disabledForeground");
+    g.setColor(textColor != null ? textColor : foreground);
+    BasicGraphicsUtils.drawString(g, text, -1, bounds.x + size + 4,
+                                  bounds.y + (bounds.height - fm.getHeight()) / 2 + fm.getAscent());
+
+    if (myLoadingTimer == null) {
+      myLoadingTimer = new Timer(LOADING_FRAME_MILLIS, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+          repaintLoadingRows();
+        }
+      });
+    }
+    if (!myLoadingTimer.isRunning()) {
+      myLoadingTimer.start();
+    }
+  }
 
-      super.paintRow(rowGraphics, clipBounds, insets, bounds, path, row, isExpanded, hasBeenExpanded, isLeaf);
-      rowGraphics.dispose();
+  /**
+   * Repaints the visible placeholder rows, or stops the animation when there are none left.
+   */
+  private void repaintLoadingRows() {
+    if (tree == null) {
+      return;
+    }
+    Rectangle dirty = null;
+    if (Boolean.TRUE.equals(tree.getClientProperty(ASYNC_CHILDREN_CLIENT_PROPERTY)) && tree.isShowing()) {
+      final Rectangle visible = tree.getVisibleRect();
+      final int first = tree.getClosestRowForLocation(visible.x, visible.y);
+      final int last = tree.getClosestRowForLocation(visible.x, visible.y + visible.height);
+      for (int row = Math.max(0, first); row <= last; row++) {
+        final TreePath path = tree.getPathForRow(row);
+        if (path != null && AsyncTreeModel.isLoadingNode(path.getLastPathComponent())) {
+          final Rectangle bounds = tree.getRowBounds(row);
+          if (bounds != null) {
+            final Rectangle spinner = new Rectangle(bounds.x, bounds.y, bounds.height, bounds.height);
+            dirty = dirty == null ? spinner : dirty.union(spinner);
+          }
+        }
+      }
+    }
+    if (dirty == null) {
+      myLoadingTimer.stop();
     }
     else {
-      super.paintRow(g, clipBounds, insets, bounds, path, row, isExpanded, hasBeenExpanded, isLeaf);
+      tree.repaint(dirty);
     }
   }
 
   @Override
   public void paint(Graphics g, JComponent c) {
-    final int containerWidth = tree.getParent() instanceof JViewport ? tree.getParent().getWidth() : tree.getWidth();
-    final int xOffset = tree.getParent() instanceof JViewport ? ((JViewport) tree.getParent()).getViewPosition().x : 0;
+    snapshotPaintState();
+    final int containerWidth = myContainerWidth;
+    final int xOffset = myXOffset;
     final Rectangle bounds = g.getClipBounds();
 
     // draw background for the given clip bounds
-    final Object sourceList = tree.getClientProperty(SOURCE_LIST_CLIENT_PROPERTY);
-    if (sourceList != null && (Boolean) sourceList) {
+    if (mySourceList) {
       Graphics2D backgroundGraphics = (Graphics2D) g.create();
       backgroundGraphics.setClip(xOffset, bounds.y, containerWidth, bounds.height);
       LIST_BACKGROUND_PAINTER.paintBorder(tree, backgroundGraphics, xOffset, bounds.y, containerWidth, bounds.height);
       backgroundGraphics.dispose();
     }
 
-    super.paint(g, c);
+    myPainting = true;
+    try {
+      super.paint(g, c);
+    }
+    finally {
+      myPainting = false;
+    }
   }
 
   protected void paintSelectedRows(Graphics g, JTree tr) {
+    final Color color = UIUtil.getTreeSelectionBackground(tr.hasFocus());
+    if (color == null || tr.isSelectionEmpty()) {
+      return;
+    }
     final Rectangle rect = tr.getVisibleRect();
-    final int firstVisibleRow = tr.getClosestRowForLocation(rect.x, rect.y);
-    final int lastVisibleRow = tr.getClosestRowForLocation(rect.x, rect.y + rect.height);
+    int firstVisibleRow = tr.getClosestRowForLocation(rect.x, rect.y);
+    int lastVisibleRow = tr.getClosestRowForLocation(rect.x, rect.y + rect.height);
+    g.setColor(color);
+
+    if (tr == tree) {
+      validateSelectedRange();
+      if (mySelectedRangeContiguous) {
+        // one fill for all visible selected rows
+        firstVisibleRow = Math.max(firstVisibleRow, mySelectedRangeFirst);
+        lastVisibleRow = Math.min(lastVisibleRow, mySelectedRangeLast);
+        if (firstVisibleRow <= lastVisibleRow) {
+          final Rectangle first = tr.getRowBounds(firstVisibleRow);
+          final Rectangle last = tr.getRowBounds(lastVisibleRow);
+          if (first != null && last != null) {
+            g.fillRect(0, first.y, tr.getWidth(), last.y + last.height - first.y);
+          }
+        }
+        return;
+      }
+    }
 
+    final TreeSelectionModel selectionModel = tr.getSelectionModel();
     for (int row = firstVisibleRow; row <= lastVisibleRow; row++) {
-      if (tr.getSelectionModel().isRowSelected(row)) {
+      if (selectionModel.isRowSelected(row)) {
         final Rectangle bounds = tr.getRowBounds(row);
-        Color color = UIUtil.getTreeSelectionBackground(tr.hasFocus());
-        if (color != null) {
-          g.setColor(color);
-          g.fillRect(0, bounds.y, tr.getWidth(), bounds.height);
-        }
+        g.fillRect(0, bounds.y, tr.getWidth(), bounds.height);
       }
     }
   }
@@ -412,10 +1049,13 @@ public class DarculaTreeUI extends BasicTreeUI {
                                     boolean isExpanded,
                                     boolean hasBeenExpanded,
                                     boolean isLeaf) {
-    boolean isPathSelected = tree.getSelectionModel().isPathSelected(path);
-    if (!isLeaf(row)) {
-      setExpandedIcon(DarculaUIUtil.getTreeNodeIcon(true, isPathSelected, tree.hasFocus()));
-      setCollapsedIcon(DarculaUIUtil.getTreeNodeIcon(false, isPathSelected, tree.hasFocus()));
+    if (!isLeaf) {
+      if (!myPainting) {
+        snapshotPaintState();
+      }
+      final int index = myFocused && isSelectedRow(row) ? 1 : 0;
+      setExpandedIcon(myExpandedNodeIcons[index]);
+      setCollapsedIcon(myCollapsedNodeIcons[index]);
     }
 
     super.paintExpandControl(g, clipBounds, insets, bounds, path, row, isExpanded, hasBeenExpanded, isLeaf);
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula.ui;
+
+import com.bulenkov.darcula.util.AsyncTreeModel;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.*;
+
+/**
+ * Substring index over the display strings of all nodes of a tree model, expanded or not.
+ * <p>
+ * The index mirrors the model structure and is kept up to date from <code>TreeModelListener</code>
+ * events. Queries of three or more characters only look at the nodes that contain the rarest
+ * trigram of the query; shorter queries scan the flat node list, which is still much cheaper
+ * than walking the model. Removed and renamed nodes leave stale postings behind, which are
+ * filtered out by the final <code>contains</code> check and compacted once they outnumber the
+ * live nodes.
+ * <p>
+ * Children of {@link AsyncTreeModel} nodes are indexed once they have been loaded. The index
+ * never triggers a load itself.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class TreeSearchIndex implements TreeModelListener {
+  private static final int COMPACT_THRESHOLD = 1024;
+
+  private final JTree myTree;
+  private final TreeModel myModel;
+
+  private final Map<Object, Entry> myEntries = new HashMap<Object, Entry>();
+  private final Map<Long, List<Entry>> myTrigrams = new HashMap<Long, List<Entry>>();
+  private final List<Entry> myAll = new ArrayList<Entry>();
+  private Entry myRoot;
+  private int myGarbage;
+  private boolean myOrderValid;
+
+  TreeSearchIndex(JTree tree, TreeModel model) {
+    myTree = tree;
+    myModel = model;
+    model.addTreeModelListener(this);
+    rebuild();
+  }
+
+  void dispose() {
+    myModel.removeTreeModelListener(this);
+  }
+
+  /**
+   * @return the next node after <code>from</code> in depth-first order whose text contains
+   * <code>query</code>, wrapping around, or <code>null</code> if no node matches. With
+   * <code>inclusive</code>, <code>from</code> itself is returned if it matches.
+   */
+  TreePath find(String query, TreePath from, boolean forward, boolean inclusive) {
+    final String text = query.toLowerCase(Locale.ENGLISH);
+    validateOrder();
+    final List<Entry> candidates = getCandidates(text);
+    final Entry current = from == null ? null : myEntries.get(from.getLastPathComponent());
+    final int pivot = current != null ? current.myOrder : forward ? -1 : Integer.MAX_VALUE;
+    final boolean skipRoot = !myTree.isRootVisible();
+
+    // one pass for the nearest match past the pivot and the first one to wrap around to
+    Entry next = null;
+    Entry wrap = null;
+    for (Entry entry : candidates) {
+      if (entry.myRemoved || (skipRoot && entry == myRoot) || !entry.myText.contains(text)) {
+        continue;
+      }
+      final int order = entry.myOrder;
+      if (forward) {
+        if ((order > pivot || inclusive && order == pivot) && (next == null || order < next.myOrder)) {
+          next = entry;
+        }
+        if (wrap == null || order < wrap.myOrder) {
+          wrap = entry;
+        }
+      }
+      else {
+        if ((order < pivot || inclusive && order == pivot) && (next == null || order > next.myOrder)) {
+          next = entry;
+        }
+        if (wrap == null || order > wrap.myOrder) {
+          wrap = entry;
+        }
+      }
+    }
+    final Entry result = next != null ? next : wrap;
+    return result == null ? null : toPath(result);
+  }
+
+  /**
+   * @return nodes that may contain <code>text</code>, with stale entries among them
+   */
+  private List<Entry> getCandidates(String text) {
+    List<Entry> candidates = myAll;
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      final List<Entry> posting = myTrigrams.get(trigram(text, i));
+      if (posting == null) {
+        return Collections.emptyList();
+      }
+      if (posting.size() < candidates.size()) {
+        candidates = posting;
+      }
+    }
+    return candidates;
+  }
+
+  private static TreePath toPath(Entry entry) {
+    int depth = 0;
+    for (Entry e = entry; e != null; e = e.myParent) {
+      depth++;
+    }
+    final Object[] nodes = new Object[depth];
+    for (Entry e = entry; e != null; e = e.myParent) {
+      nodes[--depth] = e.myNode;
+    }
+    return new TreePath(nodes);
+  }
+
+  private void rebuild() {
+    myEntries.clear();
+    myTrigrams.clear();
+    myAll.clear();
+    myGarbage = 0;
+    myOrderValid = false;
+    final Object root = myModel.getRoot();
+    myRoot = root == null ? null : add(null, root);
+  }
+
+  private Entry add(Entry parent, Object node) {
+    final Entry entry = new Entry(parent, node, getText(node));
+    myEntries.put(node, entry);
+    myAll.add(entry);
+    index(entry);
+    addChildren(entry);
+    return entry;
+  }
+
+  private void addChildren(Entry entry) {
+    final Object node = entry.myNode;
+    if (myModel.isLeaf(node)
+        || myModel instanceof AsyncTreeModel && !((AsyncTreeModel)myModel).hasLoadedChildren(node)) {
+      return;
+    }
+    final int count = myModel.getChildCount(node);
+    for (int i = 0; i < count; i++) {
+      final Object child = myModel.getChild(node, i);
+      if (child != null && !AsyncTreeModel.isLoadingNode(child)) {
+        entry.getChildren().add(add(entry, child));
+      }
+    }
+  }
+
+  private void remove(Entry entry) {
+    entry.myRemoved = true;
+    myEntries.remove(entry.myNode);
+    myGarbage++;
+    if (entry.myChildren != null) {
+      for (Entry child : entry.myChildren) {
+        remove(child);
+      }
+      entry.myChildren = null;
+    }
+  }
+
+  private void index(Entry entry) {
+    final String text = entry.myText;
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      final Long key = trigram(text, i);
+      List<Entry> posting = myTrigrams.get(key);
+      if (posting == null) {
+        posting = new ArrayList<Entry>(2);
+        myTrigrams.put(key, posting);
+      }
+      // repeated trigrams of one text are added one after another
+      if (posting.isEmpty() || posting.get(posting.size() - 1) != entry) {
+        posting.add(entry);
+      }
+    }
+  }
+
+  private void setText(Entry entry) {
+    final String text = getText(entry.myNode);
+    if (!text.equals(entry.myText)) {
+      entry.myText = text;
+      index(entry);
+      myGarbage++;
+    }
+  }
+
+  private String getText(Object node) {
+    final String text = myTree.convertValueToText(node, false, false, myModel.isLeaf(node), -1, false);
+    return text == null ? "" : text.toLowerCase(Locale.ENGLISH);
+  }
+
+  private static Long trigram(String text, int offset) {
+    return ((long)text.charAt(offset) << 32) | ((long)text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+  }
+
+  /**
+   * Numbers the live nodes in depth-first order, and drops stale postings if there are many.
+   */
+  private void validateOrder() {
+    final boolean compact = myGarbage > myEntries.size() + COMPACT_THRESHOLD;
+    if (myOrderValid && !compact) {
+      return;
+    }
+    myOrderValid = true;
+    if (compact) {
+      myTrigrams.clear();
+      myAll.clear();
+      myGarbage = 0;
+    }
+    if (myRoot == null) {
+      return;
+    }
+    int order = 0;
+    final Deque<Entry> stack = new ArrayDeque<Entry>();
+    stack.push(myRoot);
+    while (!stack.isEmpty()) {
+      final Entry entry = stack.pop();
+      entry.myOrder = order++;
+      if (compact) {
+        myAll.add(entry);
+        index(entry);
+      }
+      final List<Entry> children = entry.myChildren;
+      if (children != null) {
+        for (int i = children.size() - 1; i >= 0; i--) {
+          stack.push(children.get(i));
+        }
+      }
+    }
+  }
+
+  @Override
+  public void treeNodesChanged(TreeModelEvent e) {
+    final Object[] children = e.getChildren();
+    if (children == null || children.length == 0) {
+      // the root itself changed
+      final TreePath path = e.getTreePath();
+      final Entry entry = path == null ? null : myEntries.get(path.getLastPathComponent());
+      if (entry != null) {
+        setText(entry);
+      }
+      return;
+    }
+    for (Object child : children) {
+      final Entry entry = myEntries.get(child);
+      if (entry != null) {
+        setText(entry);
+      }
+    }
+  }
+
+  @Override
+  public void treeNodesInserted(TreeModelEvent e) {
+    final Entry parent = getParentEntry(e);
+    final int[] indices = e.getChildIndices();
+    final Object[] children = e.getChildren();
+    if (parent == null || indices == null || children == null) {
+      return;
+    }
+    final Integer[] order = new Integer[indices.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return indices[o1] - indices[o2];
+      }
+    });
+    final List<Entry> siblings = parent.getChildren();
+    for (Integer i : order) {
+      if (AsyncTreeModel.isLoadingNode(children[i])) {
+        continue;
+      }
+      siblings.add(Math.min(indices[i], siblings.size()), add(parent, children[i]));
+    }
+    myOrderValid = false;
+  }
+
+  @Override
+  public void treeNodesRemoved(TreeModelEvent e) {
+    final Entry parent = getParentEntry(e);
+    final Object[] children = e.getChildren();
+    if (parent == null || children == null || parent.myChildren == null) {
+      return;
+    }
+    for (Object child : children) {
+      final Entry entry = myEntries.get(child);
+      if (entry != null && entry.myParent == parent) {
+        parent.myChildren.remove(entry);
+        remove(entry);
+      }
+    }
+    myOrderValid = false;
+  }
+
+  @Override
+  public void treeStructureChanged(TreeModelEvent e) {
+    final TreePath path = e.getTreePath();
+    if (path == null || path.getParentPath() == null) {
+      rebuild();
+      return;
+    }
+    final Entry entry = myEntries.get(path.getLastPathComponent());
+    if (entry == null) {
+      // somewhere below a node that is not indexed yet
+      return;
+    }
+    if (entry.myChildren != null) {
+      for (Entry child : entry.myChildren) {
+        remove(child);
+      }
+      entry.myChildren = null;
+    }
+    setText(entry);
+    addChildren(entry);
+    myOrderValid = false;
+  }
+
+  private Entry getParentEntry(TreeModelEvent e) {
+    final TreePath path = e.getTreePath();
+    return path == null ? null : myEntries.get(path.getLastPathComponent());
+  }
+
+  private static final class Entry {
+    private final Entry myParent;
+    private final Object myNode;
+    private String myText;
+    private List<Entry> myChildren;
+    private int myOrder;
+    private boolean myRemoved;
+
+    Entry(Entry parent, Object node, String text) {
+      myParent = parent;
+      myNode = node;
+      myText = text;
+    }
+
+    List<Entry> getChildren() {
+      if (myChildren == null) {
+        myChildren = new ArrayList<Entry>();
+      }
+      return myChildren;
+    }
+  }
+}
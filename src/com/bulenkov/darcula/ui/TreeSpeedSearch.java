@@ -0,0 +1,212 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.bulenkov.darcula.ui;
+
+import javax.swing.*;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+/**
+ * Type-to-find for {@link DarculaTreeUI}. Typed characters go to a search field shown above the
+ * tree, and the selection jumps to the next node whose text contains them, expanding its parents
+ * if needed. Up and down move between matches; escape, focus loss or a click closes the field.
+ * <p>
+ * The {@link TreeSearchIndex} is built on the first typed character and kept until the model is
+ * replaced.
+ *
+ * @author Konstantin Bulenkov
+ */
+final class TreeSpeedSearch {
+  private static final Color NO_MATCH_FOREGROUND = new Color(0xFF6464);
+
+  private final JTree myTree;
+  private TreeSearchIndex myIndex;
+  private String myQuery = "";
+  private boolean myFound;
+  private JTextField myField;
+  private Popup myPopup;
+
+  private final FocusListener myFocusListener = new FocusAdapter() {
+    @Override
+    public void focusLost(FocusEvent e) {
+      hide();
+    }
+  };
+
+  private final MouseListener myMouseListener = new MouseAdapter() {
+    @Override
+    public void mousePressed(MouseEvent e) {
+      hide();
+    }
+  };
+
+  private final PropertyChangeListener myModelListener = new PropertyChangeListener() {
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+      hide();
+      disposeIndex();
+    }
+  };
+
+  TreeSpeedSearch(JTree tree) {
+    myTree = tree;
+    tree.addFocusListener(myFocusListener);
+    tree.addMouseListener(myMouseListener);
+    tree.addPropertyChangeListener(JTree.TREE_MODEL_PROPERTY, myModelListener);
+  }
+
+  void dispose() {
+    hide();
+    disposeIndex();
+    myTree.removeFocusListener(myFocusListener);
+    myTree.removeMouseListener(myMouseListener);
+    myTree.removePropertyChangeListener(JTree.TREE_MODEL_PROPERTY, myModelListener);
+  }
+
+  boolean isActive() {
+    return myQuery.length() > 0;
+  }
+
+  /**
+   * @return <code>true</code> if the character was added to the search
+   */
+  boolean keyTyped(KeyEvent e) {
+    final char c = e.getKeyChar();
+    if (c == KeyEvent.CHAR_UNDEFINED || c < ' ' || c == KeyEvent.VK_DELETE
+        || e.isAltDown() || e.isControlDown() || e.isMetaDown()
+        || (!isActive() && c == ' ')) {
+      return false;
+    }
+    search(myQuery + c);
+    return true;
+  }
+
+  /**
+   * @return <code>true</code> if the key was used by an active search
+   */
+  boolean keyPressed(KeyEvent e) {
+    if (!isActive()) {
+      return false;
+    }
+    switch (e.getKeyCode()) {
+      case KeyEvent.VK_ESCAPE:
+        hide();
+        return true;
+      case KeyEvent.VK_BACK_SPACE:
+        if (myQuery.length() == 1) {
+          hide();
+        }
+        else {
+          search(myQuery.substring(0, myQuery.length() - 1));
+        }
+        return true;
+      case KeyEvent.VK_UP:
+        next(false);
+        return true;
+      case KeyEvent.VK_DOWN:
+        next(true);
+        return true;
+      case KeyEvent.VK_SHIFT:
+      case KeyEvent.VK_CONTROL:
+      case KeyEvent.VK_ALT:
+      case KeyEvent.VK_META:
+      case KeyEvent.VK_ALT_GRAPH:
+        return false;
+      default:
+        // any other key, like enter, ends the search and does its usual job
+        if (e.getKeyChar() == KeyEvent.CHAR_UNDEFINED || e.getKeyChar() < ' ') {
+          hide();
+        }
+        return false;
+    }
+  }
+
+  private void search(String query) {
+    myQuery = query;
+    final TreePath path = getIndex().find(query, myTree.getLeadSelectionPath(), true, true);
+    myFound = path != null;
+    if (myFound) {
+      select(path);
+    }
+    show();
+  }
+
+  private void next(boolean forward) {
+    final TreePath path = getIndex().find(myQuery, myTree.getLeadSelectionPath(), forward, false);
+    myFound = path != null;
+    if (myFound) {
+      select(path);
+    }
+    show();
+  }
+
+  private void select(TreePath path) {
+    myTree.setSelectionPath(path);
+    myTree.scrollPathToVisible(path);
+  }
+
+  private TreeSearchIndex getIndex() {
+    if (myIndex == null) {
+      myIndex = new TreeSearchIndex(myTree, myTree.getModel());
+    }
+    return myIndex;
+  }
+
+  private void disposeIndex() {
+    if (myIndex != null) {
+      myIndex.dispose();
+      myIndex = null;
+    }
+  }
+
+  private void show() {
+    if (myField == null) {
+      myField = new JTextField();
+      myField.putClientProperty("JTextField.variant", "search");
+      myField.setFocusable(false);
+    }
+    myField.setText(myQuery);
+    myField.setForeground(myFound ? UIManager.getColor("TextField.foreground") : NO_MATCH_FOREGROUND);
+
+    if (myPopup != null) {
+      myPopup.hide();
+      myPopup = null;
+    }
+    if (myTree.isShowing()) {
+      // the popup sticks to the top left corner of the visible part of the tree
+      final Rectangle visible = myTree.getVisibleRect();
+      final Point location = new Point(visible.x, visible.y);
+      SwingUtilities.convertPointToScreen(location, myTree);
+      myField.setPreferredSize(null);
+      final Dimension size = myField.getPreferredSize();
+      size.width = Math.min(Math.max(size.width, 100), Math.max(100, visible.width));
+      myField.setPreferredSize(size);
+      myPopup = PopupFactory.getSharedInstance().getPopup(myTree, myField, location.x, location.y - size.height);
+      myPopup.show();
+    }
+  }
+
+  void hide() {
+    myQuery = "";
+    if (myPopup != null) {
+      myPopup.hide();
+      myPopup = null;
+    }
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bulenkov.darcula.util;
+
+import javax.swing.*;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tree model whose children are fetched on a background executor.
+ * <p>
+ * Until the children of a node are loaded, the node reports a single placeholder child (see
+ * {@link #isLoadingNode}), so expanding it never blocks the event dispatch thread. Loads that
+ * finish within the same frame are merged together, with one <code>treeStructureChanged</code>
+ * event per loaded node. They are not merged into one event for a common ancestor, because a
+ * structure change makes <code>JTree</code> forget the expanded nodes below it. {@link com.bulenkov.darcula.ui.DarculaTreeUI} paints placeholders as
+ * an animated loading row when the tree has
+ * {@link com.bulenkov.darcula.ui.DarculaTreeUI#ASYNC_CHILDREN_CLIENT_PROPERTY} set.
+ * <p>
+ * Nodes are used as hash keys and must not appear under more than one parent. Except for the
+ * loading itself, all methods must be called on the event dispatch thread.
+ *
+ * @author Konstantin Bulenkov
+ */
+public class AsyncTreeModel implements TreeModel {
+  public interface ChildrenLoader {
+    /**
+     * Called on the event dispatch thread, so it must be cheap.
+     */
+    boolean isLeaf(Object node);
+
+    /**
+     * Called on the background executor. A failed load leaves <code>parent</code> without children,
+     * see {@link AsyncTreeModel#loadFailed}.
+     */
+    List<?> loadChildren(Object parent) throws Exception;
+  }
+
+  private static ExecutorService ourDefaultExecutor;
+
+  private final Object myRoot;
+  private final ChildrenLoader myLoader;
+  private final Executor myExecutor;
+  private final EventListenerList myListeners = new EventListenerList();
+
+  private final Map<Object, Object[]> myChildren = new HashMap<Object, Object[]>();
+  private final Map<Object, Object> myParents = new HashMap<Object, Object>();
+  private final Map<Object, LoadingNode> myLoading = new HashMap<Object, LoadingNode>();
+  /** Loads that have finished but are not visible to the tree yet */
+  private final Map<Object, Object[]> myLoaded = new LinkedHashMap<Object, Object[]>();
+
+  private final Runnable myMerge = new Runnable() {
+    @Override
+    public void run() {
+      mergeLoaded();
+    }
+  };
+
+  public AsyncTreeModel(Object root, ChildrenLoader loader) {
+    this(root, loader, getDefaultExecutor());
+  }
+
+  public AsyncTreeModel(Object root, ChildrenLoader loader, Executor executor) {
+    myRoot = root;
+    myLoader = loader;
+    myExecutor = executor;
+  }
+
+  public static boolean isLoadingNode(Object node) {
+    return node instanceof LoadingNode;
+  }
+
+  public boolean isLoading(Object parent) {
+    return myLoading.containsKey(parent);
+  }
+
+  public boolean hasLoadedChildren(Object parent) {
+    return myChildren.containsKey(parent);
+  }
+
+  /**
+   * Drops the children of <code>node</code>. They are loaded again when the tree asks for them.
+   */
+  public void reload(Object node) {
+    final TreePath path = getPathTo(node);
+    forget(node);
+    if (path != null) {
+      fireTreeStructureChanged(path);
+    }
+  }
+
+  private void forget(Object node) {
+    final Object[] children = myChildren.remove(node);
+    if (children != null) {
+      for (Object child : children) {
+        myParents.remove(child);
+        forget(child);
+      }
+    }
+    myLoading.remove(node);
+    myLoaded.remove(node);
+  }
+
+  @Override
+  public Object getRoot() {
+    return myRoot;
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    final Object[] children = myChildren.get(parent);
+    return children != null ? children[index] : startLoading(parent);
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    final Object[] children = myChildren.get(parent);
+    if (children != null) {
+      return children.length;
+    }
+    if (isLeaf(parent)) {
+      return 0;
+    }
+    startLoading(parent);
+    return 1;
+  }
+
+  @Override
+  public boolean isLeaf(Object node) {
+    return node instanceof LoadingNode || myLoader.isLeaf(node);
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    if (parent == null || child == null) {
+      return -1;
+    }
+    final Object[] children = myChildren.get(parent);
+    if (children == null) {
+      return child == myLoading.get(parent) ? 0 : -1;
+    }
+    for (int i = 0; i < children.length; i++) {
+      if (child.equals(children[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object newValue) {
+    // the nodes come from the loader and are not editable
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener l) {
+    myListeners.add(TreeModelListener.class, l);
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener l) {
+    myListeners.remove(TreeModelListener.class, l);
+  }
+
+  private LoadingNode startLoading(final Object parent) {
+    LoadingNode placeholder = myLoading.get(parent);
+    if (placeholder == null) {
+      placeholder = new LoadingNode();
+      myLoading.put(parent, placeholder);
+      final LoadingNode request = placeholder;
+      myExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          Object[] children = new Object[0];
+          Throwable error = null;
+          try {
+            final List<?> loaded = myLoader.loadChildren(parent);
+            if (loaded != null) {
+              children = loaded.toArray();
+            }
+          }
+          catch (Throwable e) {
+            error = e;
+          }
+          finally {
+            // posted even if the loader failed, so the placeholder always goes away
+            final Object[] result = children;
+            final Throwable failure = error;
+            SwingUtilities.invokeLater(new Runnable() {
+              @Override
+              public void run() {
+                // the request is stale if the node was reloaded in the meantime
+                if (myLoading.get(parent) == request) {
+                  myLoaded.put(parent, result);
+                  FrameClock.schedule(myMerge);
+                  if (failure != null) {
+                    loadFailed(parent, failure);
+                  }
+                }
+              }
+            });
+          }
+        }
+      });
+    }
+    return placeholder;
+  }
+
+  /**
+   * Called on the event dispatch thread when the loader failed; <code>parent</code> is left
+   * without children. Reports <code>error</code> to the uncaught exception handler by default.
+   */
+  protected void loadFailed(Object parent, Throwable error) {
+    final Thread thread = Thread.currentThread();
+    thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+  }
+
+  private void mergeLoaded() {
+    if (myLoaded.isEmpty()) {
+      return;
+    }
+    final List<Object> parents = new ArrayList<Object>(myLoaded.keySet());
+    for (Object parent : parents) {
+      final Object[] children = myLoaded.remove(parent);
+      myLoading.remove(parent);
+      myChildren.put(parent, children);
+      for (Object child : children) {
+        myParents.put(child, parent);
+      }
+    }
+    for (Object parent : parents) {
+      final TreePath path = getPathTo(parent);
+      if (path != null) {
+        fireTreeStructureChanged(path);
+      }
+    }
+  }
+
+  /**
+   * @return path from the root to <code>node</code>, or <code>null</code> if it is not in the tree anymore
+   */
+  private TreePath getPathTo(Object node) {
+    final List<Object> nodes = new ArrayList<Object>();
+    Object current = node;
+    while (current != null) {
+      nodes.add(current);
+      if (current.equals(myRoot)) {
+        Collections.reverse(nodes);
+        return new TreePath(nodes.toArray());
+      }
+      current = myParents.get(current);
+    }
+    return null;
+  }
+
+  private void fireTreeStructureChanged(TreePath path) {
+    final Object[] listeners = myListeners.getListenerList();
+    TreeModelEvent event = null;
+    for (int i = listeners.length - 2; i >= 0; i -= 2) {
+      if (listeners[i] == TreeModelListener.class) {
+        if (event == null) {
+          event = new TreeModelEvent(this, path);
+        }
+        ((TreeModelListener)listeners[i + 1]).treeStructureChanged(event);
+      }
+    }
+  }
+
+  private static synchronized Executor getDefaultExecutor() {
+    if (ourDefaultExecutor == null) {
+      final AtomicInteger count = new AtomicInteger();
+      ourDefaultExecutor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, "Darcula tree loader " + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return ourDefaultExecutor;
+  }
+
+  private static final class LoadingNode {
+    @Override
+    public String toString() {
+      return "Loading...";
+    }
+  }
+}
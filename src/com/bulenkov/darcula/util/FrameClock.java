@@ -0,0 +1,79 @@
+/*
+ * Copyright 2000-2016 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.bulenkov.darcula.util;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One Swing timer shared by all components that want to do something at most once per display
+ * frame. A task scheduled several times before the next frame runs once. The timer only runs
+ * while tasks are pending.
+ * <p>
+ * All methods must be called on the event dispatch thread.
+ *
+ * @author Konstantin Bulenkov
+ */
+public final class FrameClock {
+  public static final int FRAME_MILLIS = 16;
+
+  private static final Set<Runnable> ourPending = new LinkedHashSet<Runnable>();
+  private static Timer ourTimer;
+
+  private FrameClock() {
+  }
+
+  /**
+   * Runs <code>task</code> on the next frame, unless it is already scheduled.
+   */
+  public static void schedule(Runnable task) {
+    ourPending.add(task);
+    if (ourTimer == null) {
+      ourTimer = new Timer(FRAME_MILLIS, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+          tick();
+        }
+      });
+      ourTimer.setCoalesce(true);
+    }
+    if (!ourTimer.isRunning()) {
+      ourTimer.start();
+    }
+  }
+
+  public static void cancel(Runnable task) {
+    ourPending.remove(task);
+  }
+
+  private static void tick() {
+    if (ourPending.isEmpty()) {
+      ourTimer.stop();
+      return;
+    }
+    final List<Runnable> tasks = new ArrayList<Runnable>(ourPending);
+    ourPending.clear();
+    for (Runnable task : tasks) {
+      task.run();
+    }
+  }
+}